@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.jmh;
+
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import com.ait.tooling.server.core.json.JSONObject;
+import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.IGSQLRowObjectMapper;
+
+public final class GSQLBenchmarkDatabase
+{
+    public static final String SELECT_ITEMS = "select id, name, price, created from items order by id";
+
+    public static final String SELECT_UPTO  = "select id, name, price, created from items where id <= ? order by id";
+
+    private static final int   INSERT_CHUNK = 10000;
+
+    private GSQLBenchmarkDatabase()
+    {
+    }
+
+    public static final String url(final int rows)
+    {
+        return "jdbc:h2:mem:gsqljmh_items_" + rows + ";DB_CLOSE_DELAY=-1";
+    }
+
+    public static final synchronized DataSource items(final int rows) throws SQLException
+    {
+        final JdbcDataSource source = new JdbcDataSource();
+
+        source.setURL(url(rows));
+
+        final GSQL gsql = new GSQL(source);
+
+        if (null == gsql.firstRow("select table_name from information_schema.tables where table_name = 'ITEMS'"))
+        {
+            gsql.execute("create table items (id bigint primary key, name varchar(64), price decimal(12, 2), created timestamp)");
+
+            final long time = System.currentTimeMillis();
+
+            final List<List<Object>> list = new ArrayList<List<Object>>(Math.min(rows, INSERT_CHUNK));
+
+            for (int i = 1; i <= rows; i++)
+            {
+                list.add(Arrays.<Object> asList(Long.valueOf(i), "item-" + i, BigDecimal.valueOf(i, 2), new Timestamp(time - i)));
+
+                if ((list.size() >= INSERT_CHUNK) || (i == rows))
+                {
+                    gsql.batch("insert into items (id, name, price, created) values (?, ?, ?, ?)", list, 1000);
+
+                    list.clear();
+                }
+            }
+        }
+        return source;
+    }
+
+    public static final IGSQLRowObjectMapper mapper()
+    {
+        return new IGSQLRowObjectMapper()
+        {
+            @Override
+            public void mapObject(final JSONObject object, final String ikey, final Object value) throws SQLException
+            {
+                if (value instanceof Date)
+                {
+                    object.put(ikey, ((Date) value).getTime());
+                }
+                else
+                {
+                    object.put(ikey, value);
+                }
+            }
+        };
+    }
+
+    public static final class Item
+    {
+        private long       m_id;
+
+        private String     m_name;
+
+        private BigDecimal m_price;
+
+        private Timestamp  m_created;
+
+        public long getId()
+        {
+            return m_id;
+        }
+
+        public void setId(final long id)
+        {
+            m_id = id;
+        }
+
+        public String getName()
+        {
+            return m_name;
+        }
+
+        public void setName(final String name)
+        {
+            m_name = name;
+        }
+
+        public BigDecimal getPrice()
+        {
+            return m_price;
+        }
+
+        public void setPrice(final BigDecimal price)
+        {
+            m_price = price;
+        }
+
+        public Timestamp getCreated()
+        {
+            return m_created;
+        }
+
+        public void setCreated(final Timestamp created)
+        {
+            m_created = created;
+        }
+    }
+
+    public static final Writer discard()
+    {
+        return new Writer()
+        {
+            @Override
+            public void write(final char[] cbuf, final int off, final int len)
+            {
+            }
+
+            @Override
+            public void write(final String str, final int off, final int len)
+            {
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+}
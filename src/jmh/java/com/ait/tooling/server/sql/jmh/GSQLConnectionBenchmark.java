@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.jmh;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.IGSQLPhysicalConnectionHandler;
+import com.ait.tooling.server.sql.IGSQLPreProcessConnectionHandler;
+import com.ait.tooling.server.sql.support.spring.GSQLDescriptor;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class GSQLConnectionBenchmark
+{
+    @Param({ "0", "1", "4" })
+    public int               handlers;
+
+    @Param({ "false", "true" })
+    public boolean           physical;
+
+    private HikariDataSource m_hikari;
+
+    private GSQLDescriptor   m_descriptor;
+
+    private ConnectionGSQL   m_gsql;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException
+    {
+        GSQLBenchmarkDatabase.items(1);
+
+        final HikariConfig config = new HikariConfig();
+
+        config.setJdbcUrl(GSQLBenchmarkDatabase.url(1));
+
+        config.setMaximumPoolSize(4);
+
+        m_hikari = new HikariDataSource(config);
+
+        final List<IGSQLPreProcessConnectionHandler> list = new ArrayList<IGSQLPreProcessConnectionHandler>();
+
+        for (int i = 0; i < handlers; i++)
+        {
+            list.add(physical ? new SessionHandler() : new IGSQLPreProcessConnectionHandler()
+            {
+                @Override
+                public void preProcessConnection(final Connection connection) throws SQLException
+                {
+                    connection.setReadOnly(false);
+                }
+            });
+        }
+        m_descriptor = new GSQLDescriptor(m_hikari);
+
+        m_descriptor.setPreProcessConnectionHandlers(list);
+
+        m_gsql = new ConnectionGSQL(m_hikari);
+
+        m_gsql.setPreProcessConnectionHandlers(list);
+
+        m_gsql.setInstrumentationHandler(m_descriptor.getInstrumentationHandler());
+
+        m_gsql.setPhysicalConnectionTracker(m_descriptor.getPhysicalConnectionTracker());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        m_hikari.close();
+    }
+
+    @Benchmark
+    public boolean createConnection() throws SQLException
+    {
+        return m_gsql.cycle();
+    }
+
+    @Benchmark
+    public GSQL descriptorMake()
+    {
+        return m_descriptor.make();
+    }
+
+    @Benchmark
+    public GSQL descriptorGSQL()
+    {
+        return m_descriptor.gsql();
+    }
+
+    private static final class SessionHandler implements IGSQLPhysicalConnectionHandler
+    {
+        @Override
+        public void preProcessConnection(final Connection connection) throws SQLException
+        {
+            connection.setReadOnly(false);
+        }
+
+        @Override
+        public Object getPhysicalConnectionState()
+        {
+            return Boolean.FALSE;
+        }
+    }
+
+    private static final class ConnectionGSQL extends GSQL
+    {
+        private ConnectionGSQL(final DataSource source)
+        {
+            super(source);
+        }
+
+        private boolean cycle() throws SQLException
+        {
+            final Connection connection = createConnection();
+
+            try
+            {
+                return connection.getAutoCommit();
+            }
+            finally
+            {
+                closeResources(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.jmh;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.GSQLColumnPlanCache;
+import com.ait.tooling.server.sql.GSQLColumnarResult;
+import com.ait.tooling.server.sql.GSQLCursor;
+import com.ait.tooling.server.sql.IGSQLRowObjectMapper;
+
+import groovy.lang.Closure;
+import groovy.sql.GroovyResultSet;
+import groovy.sql.GroovyRowResult;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class GSQLRowMappingBenchmark
+{
+    @Param({ "1", "100", "10000", "1000000" })
+    public int                    rows;
+
+    @Param({ "false", "true" })
+    public boolean                mapper;
+
+    private GSQL                  m_gsql;
+
+    private IGSQLRowObjectMapper  m_rmap;
+
+    private List<GroovyRowResult> m_list;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException
+    {
+        m_rmap = mapper ? GSQLBenchmarkDatabase.mapper() : null;
+
+        m_gsql = new GSQL(GSQLBenchmarkDatabase.items(rows));
+
+        m_gsql.setRowObjectMapper(m_rmap);
+
+        m_gsql.setColumnPlanCache(new GSQLColumnPlanCache());
+
+        m_list = m_gsql.rows(GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+
+    @Benchmark
+    public JSONArray jarrRowResults() throws SQLException
+    {
+        return GSQL.jarr(m_list, m_rmap);
+    }
+
+    @Benchmark
+    public void jsonRowResults(final Blackhole hole) throws SQLException
+    {
+        for (GroovyRowResult row : m_list)
+        {
+            hole.consume(GSQL.json(row, m_rmap));
+        }
+    }
+
+    @Benchmark
+    public void jsonGroovyResultSet(final Blackhole hole) throws SQLException
+    {
+        final IGSQLRowObjectMapper rmap = m_rmap;
+
+        m_gsql.eachRow(GSQLBenchmarkDatabase.SELECT_ITEMS, new Closure<Object>(this)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @SuppressWarnings("unused")
+            public Object doCall(final GroovyResultSet rset) throws SQLException
+            {
+                hole.consume(GSQL.json(rset, rmap));
+
+                return null;
+            }
+        });
+    }
+
+    @Benchmark
+    public JSONArray jarrRowsQuery() throws SQLException
+    {
+        return GSQL.jarr(m_gsql.rows(GSQLBenchmarkDatabase.SELECT_ITEMS), m_rmap);
+    }
+
+    @Benchmark
+    public JSONArray jarrQuery() throws SQLException
+    {
+        return m_gsql.jarr(GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+
+    @Benchmark
+    public void cursorQuery(final Blackhole hole) throws SQLException
+    {
+        try (GSQLCursor cursor = m_gsql.cursor(GSQLBenchmarkDatabase.SELECT_ITEMS))
+        {
+            while (cursor.hasNext())
+            {
+                hole.consume(cursor.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public long jstreamQuery() throws SQLException, IOException
+    {
+        return m_gsql.jstream(GSQLBenchmarkDatabase.discard(), GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+
+    @Benchmark
+    public GSQLColumnarResult columnarQuery() throws SQLException
+    {
+        return m_gsql.columnar(GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+
+    @Benchmark
+    public void columnarStream() throws SQLException, IOException
+    {
+        m_gsql.columnar(GSQLBenchmarkDatabase.SELECT_ITEMS).writeJSON(GSQLBenchmarkDatabase.discard());
+    }
+
+    @Benchmark
+    public List<GSQLBenchmarkDatabase.Item> listQuery() throws SQLException
+    {
+        return m_gsql.list(GSQLBenchmarkDatabase.Item.class, GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+
+    @Benchmark
+    public List<JSONObject> listJSONQuery() throws SQLException
+    {
+        return m_gsql.list(JSONObject.class, GSQLBenchmarkDatabase.SELECT_ITEMS);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.jmh;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.IGSQLStatementSetObjectHandler;
+import com.ait.tooling.server.sql.IGSQLTypedStatementSetObjectHandler;
+
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class GSQLSetObjectBenchmark
+{
+    @Param({ "0", "4", "16" })
+    public int                handlers;
+
+    private BindingGSQL       m_gsql;
+
+    private Connection        m_connection;
+
+    private PreparedStatement m_statement;
+
+    private Object[]          m_values;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException
+    {
+        final DataSource source = GSQLBenchmarkDatabase.items(1);
+
+        final List<IGSQLStatementSetObjectHandler> list = new ArrayList<IGSQLStatementSetObjectHandler>();
+
+        // a mix of typed handlers for other classes and untyped handlers that decline, none of them claim the bound values.
+
+        for (int i = 0; i < handlers; i++)
+        {
+            list.add(((i % 2) == 0) ? new TypedHandler((i % 4) == 0 ? UUID.class : URL.class) : new UntypedHandler());
+        }
+        m_gsql = new BindingGSQL(source);
+
+        m_gsql.setStatementSetObjectHandlers(list);
+
+        m_connection = source.getConnection();
+
+        m_statement = m_connection.prepareStatement("select ?, ?, ?, ?");
+
+        m_values = new Object[] { Long.valueOf(42), "value", new Timestamp(System.currentTimeMillis()), BigDecimal.TEN };
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws SQLException
+    {
+        m_statement.close();
+
+        m_connection.close();
+    }
+
+    @Benchmark
+    public PreparedStatement setObject() throws SQLException
+    {
+        m_gsql.bind(m_statement, m_values);
+
+        return m_statement;
+    }
+
+    private static final class BindingGSQL extends GSQL
+    {
+        private BindingGSQL(final DataSource source)
+        {
+            super(source);
+        }
+
+        private void bind(final PreparedStatement statement, final Object[] values) throws SQLException
+        {
+            for (int i = 0; i < values.length; i++)
+            {
+                setObject(statement, i + 1, values[i]);
+            }
+        }
+    }
+
+    private static final class UntypedHandler implements IGSQLStatementSetObjectHandler
+    {
+        @Override
+        public boolean setObject(final PreparedStatement statement, final int i, final Object value) throws SQLException
+        {
+            if (value instanceof UUID)
+            {
+                statement.setString(i, value.toString());
+
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class TypedHandler implements IGSQLTypedStatementSetObjectHandler
+    {
+        private final List<Class<?>> m_types;
+
+        private TypedHandler(final Class<?> type)
+        {
+            m_types = Collections.unmodifiableList(Arrays.<Class<?>> asList(type));
+        }
+
+        @Override
+        public List<Class<?>> getStatementSetObjectClasses()
+        {
+            return m_types;
+        }
+
+        @Override
+        public boolean setObject(final PreparedStatement statement, final int i, final Object value) throws SQLException
+        {
+            statement.setString(i, value.toString());
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.jmh;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import com.ait.tooling.server.core.json.JSONObject;
+import com.ait.tooling.server.sql.support.GSQLSupport;
+import com.ait.tooling.server.sql.support.spring.GSQLDescriptor;
+import com.ait.tooling.server.sql.support.spring.GSQLProvider;
+import com.ait.tooling.server.sql.support.spring.IGSQLProvider;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class GSQLSupportBenchmark
+{
+    @Param({ "1", "100", "10000", "1000000" })
+    public int               rows;
+
+    private HikariDataSource m_hikari;
+
+    private GSQLSupport      m_support;
+
+    private List<Object>     m_params;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException
+    {
+        GSQLBenchmarkDatabase.items(rows);
+
+        final HikariConfig config = new HikariConfig();
+
+        config.setJdbcUrl(GSQLBenchmarkDatabase.url(rows));
+
+        config.setMaximumPoolSize(4);
+
+        m_hikari = new HikariDataSource(config);
+
+        // GSQLSupport normally finds its provider in the Spring context, here the provider is built by hand.
+
+        final DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+
+        factory.registerSingleton("bench", new GSQLDescriptor(m_hikari));
+
+        final GSQLProvider provider = new GSQLProvider("bench");
+
+        provider.setBeanFactory(factory);
+
+        m_support = new GSQLSupport()
+        {
+            @Override
+            public IGSQLProvider getGSQLProvider()
+            {
+                return provider;
+            }
+        };
+        m_params = Collections.<Object> singletonList(Long.valueOf(rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        m_hikari.close();
+    }
+
+    @Benchmark
+    public JSONObject jsql()
+    {
+        return m_support.jsql("bench", GSQLBenchmarkDatabase.SELECT_UPTO, m_params);
+    }
+}
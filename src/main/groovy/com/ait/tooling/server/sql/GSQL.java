@@ -4,14 +4,34 @@
 
 package com.ait.tooling.server.sql;
 
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
@@ -24,17 +44,84 @@ import groovy.sql.GroovyRowResult;
 import groovy.sql.InOutParameter;
 import groovy.sql.InParameter;
 import groovy.sql.OutParameter;
+import groovy.lang.Closure;
+import groovy.lang.GString;
 import groovy.sql.ResultSetOutParameter;
 import groovy.sql.Sql;
+import groovy.sql.SqlWithParams;
 
 public class GSQL extends Sql
 {
     private static IGSQLRowObjectMapper            s_default_row_object_mapper;
 
-    private List<IGSQLStatementSetObjectHandler>   m_setobj_list;
+    private static final String[]                  s_json_rows_wrapper = jrowsWrapper();
+
+    private static final List<Object>              EMPTY_PARAMS        = Collections.emptyList();
+
+    private static final GSQLShapeCache            s_shape_cache       = new GSQLShapeCache();
+
+    private static final GSQLRowMapperCache        s_mapper_cache      = new GSQLRowMapperCache();
+
+    public static final int                        DEFAULT_BATCH_SIZE  = 500;
+
+    public static final int                        DEFAULT_FETCH_SIZE  = 1000;
+
+    private static final Pattern                   READ_QUERY          = Pattern.compile("^\\s*(?:select|with|values)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern                   READ_WRITES         = Pattern.compile("\\b(?:for\\s+(?:no\\s+key\\s+)?update|for\\s+(?:key\\s+)?share|insert|update|delete|merge|into)\\b", Pattern.CASE_INSENSITIVE);
+
+    private GSQLStatementSetObjectDispatcher       m_setobj_dispatch;
 
     private List<IGSQLPreProcessConnectionHandler> m_precon_list;
 
+    private IGSQLRowObjectMapper                   m_row_object_mapper;
+
+    private GSQLColumnPlanCache                    m_column_plans;
+
+    private IGSQLInstrumentationHandler            m_instrument;
+
+    private String                                 m_name;
+
+    private boolean                                m_cache_pinned;
+
+    private GSQLResultCache                        m_result_cache;
+
+    private final Set<String>                      m_pending_tags      = new LinkedHashSet<String>();
+
+    private boolean                                m_pending_all;
+
+    private DataSource                             m_read_source;
+
+    private GSQLPhysicalConnectionTracker          m_physical;
+
+    private GSQLStatementCache                     m_statement_cache;
+
+    private boolean                                m_stream_large;
+
+    private int                                    m_query_timeout;
+
+    private boolean                                m_measure_json      = true;
+
+    private GSQLInFlightCounter                    m_in_flight;
+
+    private final Map<Connection, Checkout>        m_open              = new IdentityHashMap<Connection, Checkout>();
+
+    private GSQLConcurrencyLimiter                 m_limiter;
+
+    private GSQLCircuitBreaker                     m_breaker;
+
+    private int                                    m_defer;
+
+    private long                                   m_defer_time;
+
+    private boolean                                m_pinning;
+
+    private final List<Checkout>                   m_unsettled         = new ArrayList<Checkout>();
+
+    private SQLException                           m_unsettled_failure;
+
+    private boolean                                m_read_next;
+
     public static final InParameter GSQLINPARAMETER(final int type, final Object value)
     {
         return in(type, value);
@@ -67,99 +154,1997 @@ public class GSQL extends Sql
         };
     }
 
+    public static final boolean isReadQuery(final String sql)
+    {
+        // conservative, locking reads and data-modifying CTEs are treated as writes.
+
+        return (null != sql) && (READ_QUERY.matcher(sql).find()) && (false == READ_WRITES.matcher(sql).find());
+    }
+
     public static final void setDefaultRowObjectMapper(final IGSQLRowObjectMapper mapper)
     {
         s_default_row_object_mapper = mapper;
     }
 
+    public static final GSQLShapeCache getShapeCache()
+    {
+        return s_shape_cache;
+    }
+
+    public static final GSQLRowMapperCache getRowMapperCache()
+    {
+        return s_mapper_cache;
+    }
+
     public GSQL(final DataSource ds)
     {
         super(Objects.requireNonNull(ds, "DataSource was null"));
     }
 
-    public void setStatementSetObjectHandlers(final List<IGSQLStatementSetObjectHandler> list)
-    {
-        m_setobj_list = list;
+    public void setStatementSetObjectHandlers(final List<IGSQLStatementSetObjectHandler> list)
+    {
+        m_setobj_dispatch = new GSQLStatementSetObjectDispatcher(list);
+    }
+
+    public void setStatementSetObjectDispatcher(final GSQLStatementSetObjectDispatcher dispatch)
+    {
+        m_setobj_dispatch = dispatch;
+    }
+
+    public void setPreProcessConnectionHandlers(final List<IGSQLPreProcessConnectionHandler> list)
+    {
+        m_precon_list = list;
+    }
+
+    public void setPhysicalConnectionTracker(final GSQLPhysicalConnectionTracker physical)
+    {
+        m_physical = physical;
+    }
+
+    public GSQLPhysicalConnectionTracker getPhysicalConnectionTracker()
+    {
+        return m_physical;
+    }
+
+    public void setStatementCache(final GSQLStatementCache cache)
+    {
+        m_statement_cache = cache;
+    }
+
+    public GSQLStatementCache getStatementCache()
+    {
+        return m_statement_cache;
+    }
+
+    public void setInFlightCounter(final GSQLInFlightCounter flight)
+    {
+        m_in_flight = flight;
+    }
+
+    public GSQLInFlightCounter getInFlightCounter()
+    {
+        return m_in_flight;
+    }
+
+    public void setConcurrencyLimiter(final GSQLConcurrencyLimiter limiter)
+    {
+        m_limiter = limiter;
+    }
+
+    public GSQLConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return m_limiter;
+    }
+
+    public void setCircuitBreaker(final GSQLCircuitBreaker breaker)
+    {
+        m_breaker = breaker;
+    }
+
+    public GSQLCircuitBreaker getCircuitBreaker()
+    {
+        return m_breaker;
+    }
+
+    public void setStreamLargeObjects(final boolean stream)
+    {
+        m_stream_large = stream;
+    }
+
+    public boolean isStreamLargeObjects()
+    {
+        return m_stream_large;
+    }
+
+    public void setMeasureJSON(final boolean measure)
+    {
+        m_measure_json = measure;
+    }
+
+    public boolean isMeasureJSON()
+    {
+        // only worth serializing a second time when somebody records the size.
+
+        return (m_measure_json) && (null != m_instrument);
+    }
+
+    public void setQueryTimeout(final int seconds)
+    {
+        m_query_timeout = Math.max(0, seconds);
+    }
+
+    public int getQueryTimeout()
+    {
+        return m_query_timeout;
+    }
+
+    public void setRowObjectMapper(final IGSQLRowObjectMapper mapper)
+    {
+        m_row_object_mapper = mapper;
+    }
+
+    public void setColumnPlanCache(final GSQLColumnPlanCache plans)
+    {
+        m_column_plans = plans;
+    }
+
+    public void setName(final String name)
+    {
+        m_name = name;
+    }
+
+    public String getName()
+    {
+        return m_name;
+    }
+
+    public void setInstrumentationHandler(final IGSQLInstrumentationHandler instrument)
+    {
+        m_instrument = instrument;
+    }
+
+    public IGSQLInstrumentationHandler getInstrumentationHandler()
+    {
+        return m_instrument;
+    }
+
+    public void setCachePinnedStatements(final boolean cache)
+    {
+        m_cache_pinned = cache;
+    }
+
+    public boolean isCachePinnedStatements()
+    {
+        return m_cache_pinned;
+    }
+
+    public void setReadDataSource(final DataSource source)
+    {
+        m_read_source = source;
+    }
+
+    public DataSource getReadDataSource()
+    {
+        return m_read_source;
+    }
+
+    public void setResultCache(final GSQLResultCache cache)
+    {
+        m_result_cache = cache;
+    }
+
+    public GSQLResultCache getResultCache()
+    {
+        return m_result_cache;
+    }
+
+    @Override
+    public void cacheConnection(final Closure closure) throws SQLException
+    {
+        // Sql.cacheStatements never gives up the connection it caches, so statements are cached inside a pinned connection that Sql does release.
+
+        m_pinning = (null == getConnection());
+
+        try
+        {
+            if (m_cache_pinned)
+            {
+                super.cacheConnection(new Closure<Object>(this)
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @SuppressWarnings("unused")
+                    public Object doCall(final Connection connection) throws SQLException
+                    {
+                        try
+                        {
+                            cacheStatements(closure);
+                        }
+                        finally
+                        {
+                            // the cached statements belong to this connection only.
+
+                            if (false == isCacheStatements())
+                            {
+                                setCacheStatements(false);
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            else
+            {
+                super.cacheConnection(closure);
+            }
+        }
+        finally
+        {
+            m_pinning = false;
+
+            release();
+        }
+    }
+
+    @Override
+    public void withTransaction(final Closure closure) throws SQLException
+    {
+        try
+        {
+            super.withTransaction(closure);
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.execute(sql);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public void execute(final String sql, final Closure closure) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            super.execute(sql, closure);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql, final List<Object> params) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.execute(sql, params);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public void execute(final String sql, final List<Object> params, final Closure closure) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            super.execute(sql, params, closure);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public List<List<Object>> executeInsert(final String sql) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeInsert(sql);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public List<List<Object>> executeInsert(final String sql, final List<Object> params) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeInsert(sql, params);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public List<GroovyRowResult> executeInsert(final String sql, final List<Object> params, final List<String> keys) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeInsert(sql, params, keys);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public List<GroovyRowResult> executeInsert(final String sql, final String[] keys) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeInsert(sql, keys);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public int executeUpdate(final String sql) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeUpdate(sql);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final List<Object> params) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.executeUpdate(sql, params);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public int[] withBatch(final int size, final Closure closure) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.withBatch(size, closure);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            // the closure adds its own statements, any table may have changed.
+
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public int[] withBatch(final int size, final String sql, final Closure closure) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.withBatch(size, sql, closure);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidate(sql);
+        }
+    }
+
+    @Override
+    public int call(final String sql, final List<Object> params) throws Exception
+    {
+        defer();
+
+        try
+        {
+            return super.call(sql, params);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            // a stored procedure can write to any table.
+
+            invalidateAll();
+        }
+    }
+
+    @Override
+    protected List<List<GroovyRowResult>> callWithRows(final String sql, final List<Object> params, final int processResultsSets, final Closure closure) throws SQLException
+    {
+        defer();
+
+        try
+        {
+            return super.callWithRows(sql, params, processResultsSets, closure);
+        }
+        catch (SQLException e)
+        {
+            throw failed(e);
+        }
+        finally
+        {
+            settle();
+
+            invalidateAll();
+        }
+    }
+
+    protected void invalidate(final String sql)
+    {
+        final GSQLResultCache cache = m_result_cache;
+
+        if ((null == cache) || (null == sql))
+        {
+            return;
+        }
+        final Set<String> tags = GSQLResultCache.getWriteTables(sql);
+
+        if (false == tags.isEmpty())
+        {
+            for (String tag : tags)
+            {
+                cache.invalidateTable(tag);
+            }
+            // a pinned connection may still be inside a transaction, readers could cache the old rows again until it commits.
+
+            if (null != getConnection())
+            {
+                m_pending_tags.addAll(tags);
+            }
+        }
+    }
+
+    protected void invalidateAll()
+    {
+        final GSQLResultCache cache = m_result_cache;
+
+        if (null == cache)
+        {
+            return;
+        }
+        cache.clear();
+
+        if (null != getConnection())
+        {
+            m_pending_all = true;
+        }
+    }
+
+    private void release()
+    {
+        final GSQLResultCache cache = m_result_cache;
+
+        if ((null != cache) && (m_pending_all))
+        {
+            cache.clear();
+        }
+        m_pending_all = false;
+
+        if ((null != cache) && (false == m_pending_tags.isEmpty()))
+        {
+            for (String tag : m_pending_tags)
+            {
+                cache.invalidateTable(tag);
+            }
+        }
+        m_pending_tags.clear();
+    }
+
+    public IGSQLRowObjectMapper getRowObjectMapper()
+    {
+        if (null != m_row_object_mapper)
+        {
+            return m_row_object_mapper;
+        }
+        return s_default_row_object_mapper;
+    }
+
+    @Override
+    protected void configure(final Statement statement)
+    {
+        super.configure(statement);
+
+        final int timeout = m_query_timeout;
+
+        if (timeout > 0)
+        {
+            try
+            {
+                statement.setQueryTimeout(timeout);
+            }
+            catch (SQLException e)
+            {
+                LOG.fine("Failed to set query timeout: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected void setObject(final PreparedStatement statement, final int i, final Object value) throws SQLException
+    {
+        final GSQLStatementSetObjectDispatcher dispatch = m_setobj_dispatch;
+
+        if ((null == dispatch) || (false == dispatch.setObject(statement, i, value)))
+        {
+            super.setObject(statement, i, value);
+        }
+    }
+
+    @Override
+    protected void closeResources(final Connection connection, final Statement statement, final ResultSet results)
+    {
+        super.closeResources(connection, statement, results);
+    }
+
+    @Override
+    protected void closeResources(final Connection connection, final Statement statement)
+    {
+        super.closeResources(connection, released(statement) ? null : statement);
+    }
+
+    protected boolean released(final Statement statement)
+    {
+        final GSQLStatementCache cache = m_statement_cache;
+
+        if (null == cache)
+        {
+            return false;
+        }
+        if (m_query_timeout > 0)
+        {
+            // the next borrower of a cached statement must not inherit our deadline.
+
+            try
+            {
+                statement.setQueryTimeout(0);
+            }
+            catch (SQLException e)
+            {
+                return false;
+            }
+        }
+        return cache.release(statement);
+    }
+
+    @Override
+    protected String asSql(final GString gstring, final List<Object> values)
+    {
+        // the text only depends on the literal parts while every value binds as a plain ?.
+
+        if (false == GSQLShapeCache.isPlain(values))
+        {
+            return super.asSql(gstring, values);
+        }
+        final String[] strings = gstring.getStrings();
+
+        String sql = s_shape_cache.get(strings);
+
+        if (null != sql)
+        {
+            return sql;
+        }
+        final int size = values.size();
+
+        sql = super.asSql(gstring, values);
+
+        // values inlined between quotes are dropped from the list, that text is specific to this call.
+
+        if (values.size() == size)
+        {
+            s_shape_cache.put(strings, sql);
+        }
+        return sql;
+    }
+
+    @Override
+    protected void closeResources(final Connection connection)
+    {
+        super.closeResources(connection);
+
+        // Sql keeps pinned connections open through here, only count the one that actually went back.
+
+        if ((null != connection) && (false == m_open.isEmpty()) && (m_open.containsKey(connection)) && (isClosed(connection)))
+        {
+            final Checkout checkout = m_open.remove(connection);
+
+            if (null != checkout.m_flight)
+            {
+                checkout.m_flight.released();
+            }
+            if (m_defer > 0)
+            {
+                m_unsettled.add(checkout);
+            }
+            else
+            {
+                checkout.finish(null);
+            }
+        }
+    }
+
+    private void defer()
+    {
+        // Sql releases the connection before its exception reaches us, hold the outcome until the call returns.
+
+        if (m_defer++ == 0)
+        {
+            m_defer_time = System.nanoTime();
+        }
+    }
+
+    protected SQLException failed(final SQLException e)
+    {
+        if (GSQLCircuitBreaker.isFailure(e))
+        {
+            if (m_defer > 0)
+            {
+                m_unsettled_failure = e;
+            }
+            failed(getConnection(), e);
+        }
+        return e;
+    }
+
+    private void settle()
+    {
+        if (--m_defer > 0)
+        {
+            return;
+        }
+        final SQLException failure = m_unsettled_failure;
+
+        m_unsettled_failure = null;
+
+        final long nanos = System.nanoTime() - m_defer_time;
+
+        // Sql runs these writes itself, so the whole call stands in for the statement time.
+
+        timed(getConnection(), nanos);
+
+        if (false == m_unsettled.isEmpty())
+        {
+            for (Checkout checkout : m_unsettled)
+            {
+                checkout.m_execute = Math.max(checkout.m_execute, nanos);
+
+                checkout.finish(failure);
+            }
+            m_unsettled.clear();
+        }
+    }
+
+    protected void failed(final Connection connection, final SQLException e)
+    {
+        // the outcome is settled when the connection goes back, so a cursor still counts while it is open.
+
+        if ((null != connection) && (false == m_open.isEmpty()) && (GSQLCircuitBreaker.isFailure(e)))
+        {
+            final Checkout checkout = m_open.get(connection);
+
+            if (null != checkout)
+            {
+                checkout.m_failure = e;
+            }
+        }
+    }
+
+    protected ResultSet executeQuery(final Connection connection, final PreparedStatement statement) throws SQLException
+    {
+        try
+        {
+            return statement.executeQuery();
+        }
+        catch (SQLException e)
+        {
+            failed(connection, e);
+
+            throw e;
+        }
+    }
+
+    private static final boolean isClosed(final Connection connection)
+    {
+        try
+        {
+            return connection.isClosed();
+        }
+        catch (SQLException e)
+        {
+            return true;
+        }
+    }
+
+    @Override
+    protected Connection createConnection() throws SQLException
+    {
+        final IGSQLInstrumentationHandler instrument = m_instrument;
+
+        final long time = (null == instrument) ? 0L : System.nanoTime();
+
+        final Connection pinned = getConnection();
+
+        final GSQLConcurrencyLimiter limiter = (null == pinned) ? m_limiter : null;
+
+        final GSQLCircuitBreaker breaker = (null == pinned) ? m_breaker : null;
+
+        // a pinned connection is already paid for, only fresh checkouts are admitted.
+
+        final long epoch = (null == breaker) ? 0L : breaker.admit();
+
+        if (epoch < 0)
+        {
+            throw new SQLTransientConnectionException("GSQL [" + m_name + "] circuit breaker is open.", "08001");
+        }
+        if ((null != limiter) && (false == limiter.acquire()))
+        {
+            if (null != breaker)
+            {
+                breaker.cancel();
+            }
+            throw new SQLTransientConnectionException("GSQL [" + m_name + "] concurrency limit " + limiter.getLimit() + " reached.", "08001");
+        }
+        final Checkout checkout = new Checkout(limiter, breaker, epoch);
+
+        // the connection a unit of work pins is held for the whole closure by design.
+
+        checkout.m_pinned = m_pinning;
+
+        m_pinning = false;
+
+        final Connection connection;
+
+        try
+        {
+            connection = createRoutedConnection();
+        }
+        catch (SQLException e)
+        {
+            checkout.finish(e);
+
+            throw e;
+        }
+        final GSQLInFlightCounter flight = m_in_flight;
+
+        if ((connection != pinned) && ((null != flight) || (checkout.isAdmitted())) && (null == m_open.putIfAbsent(connection, checkout)))
+        {
+            if (null != flight)
+            {
+                checkout.m_flight = flight;
+
+                flight.acquired();
+            }
+        }
+        else
+        {
+            checkout.finish(null);
+        }
+
+        if ((null != m_precon_list) && (false == m_precon_list.isEmpty()))
+        {
+            try
+            {
+                for (IGSQLPreProcessConnectionHandler handler : m_precon_list)
+                {
+                    if (handler instanceof IGSQLPhysicalConnectionHandler)
+                    {
+                        GSQLPhysicalConnectionTracker physical = m_physical;
+
+                        if (null == physical)
+                        {
+                            physical = m_physical = new GSQLPhysicalConnectionTracker();
+                        }
+                        physical.preProcessConnection(connection, (IGSQLPhysicalConnectionHandler) handler);
+                    }
+                    else
+                    {
+                        handler.preProcessConnection(connection);
+                    }
+                }
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                // nobody will ever close a connection we fail to hand out, give it and its permits back here.
+
+                if (connection != pinned)
+                {
+                    abandon(connection, (e instanceof SQLException) ? (SQLException) e : null);
+                }
+                throw e;
+            }
+        }
+        if (null != instrument)
+        {
+            instrument.onConnectionAcquired(m_name, System.nanoTime() - time);
+        }
+        return connection;
+    }
+
+    private void abandon(final Connection connection, final SQLException e)
+    {
+        final Checkout checkout = m_open.remove(connection);
+
+        if (null != checkout)
+        {
+            if (null != checkout.m_flight)
+            {
+                checkout.m_flight.released();
+            }
+            checkout.finish(e);
+        }
+        try
+        {
+            connection.close();
+        }
+        catch (SQLException c)
+        {
+            LOG.fine("Failed to close abandoned connection: " + c.getMessage());
+        }
+    }
+
+    private Connection createRoutedConnection() throws SQLException
+    {
+        final boolean read = m_read_next;
+
+        m_read_next = false;
+
+        final DataSource source = m_read_source;
+
+        // pinned connections and Sql statement caching both reuse the connection for writes, so they stay on the primary.
+
+        if ((read) && (null != source) && (null == getConnection()) && (false == isCacheStatements()))
+        {
+            try
+            {
+                return source.getConnection();
+            }
+            catch (SQLException e)
+            {
+                LOG.fine("Read DataSource failed, using primary: " + e.getMessage());
+            }
+        }
+        return super.createConnection();
+    }
+
+    protected Connection createReadConnection(final String sql) throws SQLException
+    {
+        m_read_next = isReadQuery(sql);
+
+        return createConnection();
+    }
+
+    @Override
+    protected AbstractQueryCommand createQueryCommand(final String sql)
+    {
+        m_read_next = isReadQuery(sql);
+
+        return super.createQueryCommand(sql);
+    }
+
+    @Override
+    protected AbstractQueryCommand createPreparedQueryCommand(final String sql, final List<Object> queryParams)
+    {
+        m_read_next = isReadQuery(sql);
+
+        // Sql keeps its own statement cache private, so only take over the command when that cache is not in use.
+
+        if (((null == m_instrument) && (null == m_statement_cache) && (null == m_limiter) && (null == m_breaker)) || (isCacheStatements()))
+        {
+            return super.createPreparedQueryCommand(sql, queryParams);
+        }
+        return new AbstractQueryCommand(sql)
+        {
+            @Override
+            protected ResultSet runQuery(final Connection connection) throws SQLException
+            {
+                final long time = System.nanoTime();
+
+                statement = prepareCached(connection, sql, queryParams);
+
+                final ResultSet results = executeQuery(connection, (PreparedStatement) statement);
+
+                executed(connection, sql, queryParams, System.nanoTime() - time);
+
+                return results;
+            }
+        };
+    }
+
+    @Override
+    protected List<GroovyRowResult> asList(final String sql, final ResultSet rs, final int offset, final int maxRows, final Closure metaClosure) throws SQLException
+    {
+        final IGSQLInstrumentationHandler instrument = m_instrument;
+
+        if (null == instrument)
+        {
+            return super.asList(sql, rs, offset, maxRows, metaClosure);
+        }
+        final long time = System.nanoTime();
+
+        final List<GroovyRowResult> list = super.asList(sql, rs, offset, maxRows, metaClosure);
+
+        instrument.onResultsMapped(m_name, GSQLFingerprint.fingerprint(sql), System.nanoTime() - time, list.size(), -1L);
+
+        return list;
+    }
+
+    private void executed(final Connection connection, final String sql, final List<Object> params, final long nanos)
+    {
+        timed(connection, nanos);
+
+        executed(sql, params, nanos);
+    }
+
+    private void timed(final Connection connection, final long nanos)
+    {
+        // the limiter learns from statement time, not from how long the connection was held.
+
+        if ((null != connection) && (false == m_open.isEmpty()))
+        {
+            final Checkout checkout = m_open.get(connection);
+
+            if (null != checkout)
+            {
+                checkout.m_execute = Math.max(checkout.m_execute, nanos);
+            }
+        }
+    }
+
+    protected void executed(final String sql, final List<Object> params, final long nanos)
+    {
+        final IGSQLInstrumentationHandler instrument = m_instrument;
+
+        if (null != instrument)
+        {
+            instrument.onStatementExecuted(m_name, sql, GSQLFingerprint.fingerprint(sql), params, nanos);
+        }
+    }
+
+    protected void mapped(final String sql, final long nanos, final long rows, final long bytes)
+    {
+        final IGSQLInstrumentationHandler instrument = m_instrument;
+
+        if (null != instrument)
+        {
+            instrument.onResultsMapped(m_name, GSQLFingerprint.fingerprint(sql), nanos, rows, bytes);
+        }
+    }
+
+    protected PreparedStatement prepare(final Connection connection, final String sql, final List<Object> params) throws SQLException
+    {
+        final SqlWithParams parsed = checkForNamedParams(sql, params);
+
+        final PreparedStatement statement;
+
+        if (getResultSetHoldability() == -1)
+        {
+            statement = connection.prepareStatement(parsed.getSql(), getResultSetType(), getResultSetConcurrency());
+        }
+        else
+        {
+            statement = connection.prepareStatement(parsed.getSql(), getResultSetType(), getResultSetConcurrency(), getResultSetHoldability());
+        }
+        configure(statement);
+
+        setParameters(parsed.getParams(), statement);
+
+        return statement;
+    }
+
+    protected PreparedStatement prepareCached(final Connection connection, final String sql, final List<Object> params) throws SQLException
+    {
+        final GSQLStatementCache cache = m_statement_cache;
+
+        // statements are kept on the physical connection the pool never sees, so only plain reads under auto commit qualify.
+
+        if ((null == cache) || (isCacheStatements()) || (getResultSetType() != ResultSet.TYPE_FORWARD_ONLY) || (getResultSetConcurrency() != ResultSet.CONCUR_READ_ONLY) || (getResultSetHoldability() != -1) || (false == isReadQuery(sql)) || (false == connection.getAutoCommit()))
+        {
+            return prepare(connection, sql, params);
+        }
+        final SqlWithParams parsed = checkForNamedParams(sql, params);
+
+        final Connection physical = cache.physical(connection);
+
+        PreparedStatement statement = cache.borrow(physical, parsed.getSql());
+
+        if (null == statement)
+        {
+            statement = physical.prepareStatement(parsed.getSql());
+
+            cache.offer(physical, parsed.getSql(), statement);
+        }
+        try
+        {
+            configure(statement);
+
+            setParameters(parsed.getParams(), statement);
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            closeQuietly(null, statement, null);
+
+            throw e;
+        }
+        return statement;
+    }
+
+    protected void closeQuietly(final Connection connection, final Statement statement, final ResultSet results)
+    {
+        if (null != results)
+        {
+            try
+            {
+                results.close();
+            }
+            catch (SQLException e)
+            {
+                LOG.fine("Failed to close ResultSet: " + e.getMessage());
+            }
+        }
+        if ((null != statement) && (false == released(statement)))
+        {
+            try
+            {
+                statement.close();
+            }
+            catch (SQLException e)
+            {
+                LOG.fine("Failed to close Statement: " + e.getMessage());
+            }
+        }
+        closeResources(connection);
+    }
+
+    protected void closeCursor(final Connection connection, final Statement statement, final ResultSet results, final boolean restore)
+    {
+        if (restore)
+        {
+            // auto commit was only turned off so the driver would honor the fetch size, nothing was written.
+
+            try
+            {
+                if (null != results)
+                {
+                    results.close();
+                }
+                connection.rollback();
+
+                connection.setAutoCommit(true);
+            }
+            catch (SQLException e)
+            {
+                LOG.fine("Failed to restore auto commit: " + e.getMessage());
+            }
+        }
+        closeQuietly(connection, statement, results);
+    }
+
+    protected GSQLColumnPlan plan(final String sql, final ResultSet rset) throws SQLException
+    {
+        final GSQLColumnPlanCache plans = m_column_plans;
+
+        if (null == plans)
+        {
+            return GSQLColumnPlan.make(rset);
+        }
+        return plans.plan(sql, rset);
+    }
+
+    public JSONObject jsql(final GString query) throws SQLException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return jsql(asSql(query, params), params);
+    }
+
+    public JSONObject jsql(final String sql) throws SQLException
+    {
+        return jsql(sql, EMPTY_PARAMS);
+    }
+
+    public JSONObject jsql(final String sql, final List<Object> params) throws SQLException
+    {
+        final GSQLResultCache cache = m_result_cache;
+
+        // reads on a pinned connection may see their own uncommitted writes, so they neither use nor fill the cache.
+
+        if ((null == cache) || (null != getConnection()) || (false == GSQLResultCache.isCacheable(Objects.requireNonNull(sql, "SQL was null"))))
+        {
+            return new JSONObject(jarr(sql, params, isMeasureJSON()));
+        }
+        final JSONObject hits = cache.get(sql, params);
+
+        if (null != hits)
+        {
+            return hits;
+        }
+        final long generation = cache.getGeneration();
+
+        final JSONObject json = new JSONObject(jarr(sql, params, isMeasureJSON()));
+
+        cache.put(sql, params, json, generation);
+
+        return json;
+    }
+
+    public JSONArray jarr(final GString query) throws SQLException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return jarr(asSql(query, params), params);
+    }
+
+    public JSONArray jarr(final String sql) throws SQLException
+    {
+        return jarr(sql, EMPTY_PARAMS);
+    }
+
+    public JSONArray jarr(final String sql, final List<Object> params) throws SQLException
+    {
+        return jarr(sql, params, false);
+    }
+
+    private JSONArray jarr(final String sql, final List<Object> params, final boolean measure) throws SQLException
+    {
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        try
+        {
+            long time = System.nanoTime();
+
+            statement = prepareCached(connection, sql, params);
+
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            time = System.nanoTime();
+
+            final JSONArray array = jarr(results, plan(sql, results), getRowObjectMapper());
+
+            final long nanos = System.nanoTime() - time;
+
+            // jsql hands back objects, so its size is what they serialize to inside the same envelope jstream writes.
+
+            mapped(sql, nanos, array.size(), measure ? utf8(s_json_rows_wrapper[0]) + utf8(array.toJSONString()) + utf8(s_json_rows_wrapper[1]) : -1L);
+
+            return array;
+        }
+        finally
+        {
+            closeQuietly(connection, statement, results);
+        }
+    }
+
+    public GSQLColumnarResult columnar(final GString query) throws SQLException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return columnar(asSql(query, params), params);
+    }
+
+    public GSQLColumnarResult columnar(final String sql) throws SQLException
+    {
+        return columnar(sql, EMPTY_PARAMS);
+    }
+
+    public GSQLColumnarResult columnar(final String sql, final List<Object> params) throws SQLException
+    {
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        try
+        {
+            long time = System.nanoTime();
+
+            statement = prepareCached(connection, sql, params);
+
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            time = System.nanoTime();
+
+            final GSQLColumnarResult columnar = GSQLColumnarResult.make(results, plan(sql, results));
+
+            mapped(sql, System.nanoTime() - time, columnar.getRowCount(), -1L);
+
+            return columnar;
+        }
+        finally
+        {
+            closeQuietly(connection, statement, results);
+        }
+    }
+
+    public <T> List<T> list(final Class<T> type, final GString query) throws SQLException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return list(type, asSql(query, params), params);
+    }
+
+    public <T> List<T> list(final Class<T> type, final String sql) throws SQLException
+    {
+        return list(type, sql, EMPTY_PARAMS);
+    }
+
+    public <T> List<T> list(final Class<T> type, final String sql, final List<Object> params) throws SQLException
+    {
+        Objects.requireNonNull(type, "Class was null");
+
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        try
+        {
+            long time = System.nanoTime();
+
+            statement = prepareCached(connection, sql, params);
+
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            time = System.nanoTime();
+
+            final IGSQLRowMapper<T> mapper = s_mapper_cache.mapper(type, plan(sql, results));
+
+            final ArrayList<T> list = new ArrayList<T>();
+
+            while (results.next())
+            {
+                list.add(mapper.map(results));
+            }
+            mapped(sql, System.nanoTime() - time, list.size(), -1L);
+
+            return list;
+        }
+        finally
+        {
+            closeQuietly(connection, statement, results);
+        }
+    }
+
+    public int warmUp(final int count, final List<String> list) throws SQLException
+    {
+        final GSQLStatementCache cache = m_statement_cache;
+
+        final ArrayList<Connection> open = new ArrayList<Connection>(Math.max(0, count));
+
+        try
+        {
+            // all held at once, so the pool has to create that many physical connections, each set up by the handlers.
+
+            for (int i = 0; i < count; i++)
+            {
+                final Connection connection = createConnection();
+
+                open.add(connection);
+
+                if ((null != cache) && (null != list))
+                {
+                    final Connection physical = cache.physical(connection);
+
+                    for (String sql : list)
+                    {
+                        final PreparedStatement statement = physical.prepareStatement(sql);
+
+                        if ((false == cache.offer(physical, sql, statement)) || (false == cache.release(statement)))
+                        {
+                            statement.close();
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for (Connection connection : open)
+            {
+                closeResources(connection);
+            }
+        }
+        return open.size();
+    }
+
+    public <T> T unitOfWork(final Closure<T> closure) throws SQLException
+    {
+        return unitOfWork(false, false, closure);
+    }
+
+    public <T> T unitOfWork(final boolean transact, final Closure<T> closure) throws SQLException
+    {
+        return unitOfWork(transact, false, closure);
+    }
+
+    public <T> T unitOfWork(final boolean transact, final boolean readonly, final Closure<T> closure) throws SQLException
+    {
+        Objects.requireNonNull(closure, "Closure was null");
+
+        final Connection pinned = getConnection();
+
+        // already pinned by an outer unit of work or by Sql itself, this level only adds a transaction or a savepoint.
+
+        if (null != pinned)
+        {
+            return scoped(pinned, transact, readonly, closure);
+        }
+        final List<T> result = new ArrayList<T>(1);
+
+        cacheConnection(new Closure<Object>(this)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @SuppressWarnings("unused")
+            public Object doCall(final Connection connection) throws SQLException
+            {
+                result.add(scoped(connection, transact, readonly, closure));
+
+                return null;
+            }
+        });
+        return result.get(0);
+    }
+
+    private <T> T scoped(final Connection connection, final boolean transact, final boolean readonly, final Closure<T> closure) throws SQLException
+    {
+        final boolean auto = connection.getAutoCommit();
+
+        // the read only hint can only change between transactions.
+
+        final boolean mark = (readonly) && (auto) && (false == connection.isReadOnly());
+
+        if (mark)
+        {
+            connection.setReadOnly(true);
+        }
+        Savepoint save = null;
+
+        if (transact)
+        {
+            if (auto)
+            {
+                connection.setAutoCommit(false);
+            }
+            else
+            {
+                save = connection.setSavepoint();
+            }
+        }
+        try
+        {
+            final T value = (closure.getMaximumNumberOfParameters() > 0) ? closure.call(this) : closure.call();
+
+            if (transact)
+            {
+                if (auto)
+                {
+                    connection.commit();
+                }
+                else
+                {
+                    releaseQuietly(connection, save);
+                }
+            }
+            return value;
+        }
+        catch (final Throwable e)
+        {
+            if (transact)
+            {
+                try
+                {
+                    if (null == save)
+                    {
+                        connection.rollback();
+                    }
+                    else
+                    {
+                        connection.rollback(save);
+                    }
+                }
+                catch (SQLException r)
+                {
+                    e.addSuppressed(r);
+                }
+            }
+            throw e;
+        }
+        finally
+        {
+            if ((transact) && (auto))
+            {
+                connection.setAutoCommit(true);
+            }
+            if (mark)
+            {
+                connection.setReadOnly(false);
+            }
+        }
+    }
+
+    private static final void releaseQuietly(final Connection connection, final Savepoint save)
+    {
+        try
+        {
+            connection.releaseSavepoint(save);
+        }
+        catch (SQLException e)
+        {
+            // not every driver releases savepoints, they go away with the transaction anyway.
+        }
+    }
+
+    public GSQLCursor cursor(final GString query) throws SQLException
+    {
+        return cursor(query, DEFAULT_FETCH_SIZE);
+    }
+
+    public GSQLCursor cursor(final GString query, final int fetch) throws SQLException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return cursor(asSql(query, params), params, fetch);
+    }
+
+    public GSQLCursor cursor(final String sql) throws SQLException
+    {
+        return cursor(sql, EMPTY_PARAMS, DEFAULT_FETCH_SIZE);
+    }
+
+    public GSQLCursor cursor(final String sql, final List<Object> params) throws SQLException
+    {
+        return cursor(sql, params, DEFAULT_FETCH_SIZE);
+    }
+
+    public GSQLCursor cursor(final String sql, final List<Object> params, final int fetch) throws SQLException
+    {
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        boolean restore = false;
+
+        try
+        {
+            // drivers such as PostgreSQL only fetch in chunks inside a transaction, a pinned connection is left as the caller set it up.
+
+            if ((fetch != 0) && (null == getConnection()) && (connection.getAutoCommit()))
+            {
+                connection.setAutoCommit(false);
+
+                restore = true;
+            }
+            final long time = System.nanoTime();
+
+            statement = prepare(connection, sql, params);
+
+            if (fetch != 0)
+            {
+                statement.setFetchSize(fetch);
+            }
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            return new GSQLCursor(this, sql, connection, statement, results, plan(sql, results), getRowObjectMapper(), restore);
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            closeCursor(connection, statement, results, restore);
+
+            throw e;
+        }
+    }
+
+    public Stream<JSONObject> stream(final GString query) throws SQLException
+    {
+        return cursor(query).stream();
+    }
+
+    public Stream<JSONObject> stream(final GString query, final int fetch) throws SQLException
+    {
+        return cursor(query, fetch).stream();
+    }
+
+    public Stream<JSONObject> stream(final String sql) throws SQLException
+    {
+        return cursor(sql).stream();
+    }
+
+    public Stream<JSONObject> stream(final String sql, final List<Object> params) throws SQLException
+    {
+        return cursor(sql, params).stream();
+    }
+
+    public Stream<JSONObject> stream(final String sql, final List<Object> params, final int fetch) throws SQLException
+    {
+        return cursor(sql, params, fetch).stream();
+    }
+
+    public GSQLBatchResult batch(final String sql, final Stream<?> params) throws SQLException
+    {
+        return batch(sql, params, DEFAULT_BATCH_SIZE);
+    }
+
+    public GSQLBatchResult batch(final String sql, final Stream<?> params, final int size) throws SQLException
+    {
+        return batch(sql, params, size, 0, false);
+    }
+
+    public GSQLBatchResult batch(final String sql, final Stream<?> params, final int size, final int commit, final boolean keys) throws SQLException
+    {
+        final Stream<?> stream = Objects.requireNonNull(params, "Stream was null");
+
+        try
+        {
+            return batch(sql, new Iterable<Object>()
+            {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Iterator<Object> iterator()
+                {
+                    return (Iterator<Object>) stream.iterator();
+                }
+            }, size, commit, keys);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    public GSQLBatchResult batch(final String sql, final Iterable<?> params) throws SQLException
+    {
+        return batch(sql, params, DEFAULT_BATCH_SIZE);
+    }
+
+    public GSQLBatchResult batch(final String sql, final Iterable<?> params, final int size) throws SQLException
+    {
+        return batch(sql, params, size, 0, false);
+    }
+
+    public GSQLBatchResult batch(final String sql, final Iterable<?> params, final int size, final int commit, final boolean keys) throws SQLException
+    {
+        Objects.requireNonNull(sql, "SQL was null");
+
+        Objects.requireNonNull(params, "Iterable was null");
+
+        final int maxs = Math.max(1, size);
+
+        final GSQLBatchResult result = new GSQLBatchResult();
+
+        final Connection connection = createConnection();
+
+        // a connection already in a transaction belongs to its owner, only commit chunks of a transaction this batch started.
+
+        final boolean owned = (commit > 0) && (connection.getAutoCommit());
+
+        PreparedStatement statement = null;
+
+        String prepared = null;
+
+        try
+        {
+            if (owned)
+            {
+                connection.setAutoCommit(false);
+            }
+            int count = 0;
+
+            int batch = 0;
+
+            for (Object item : params)
+            {
+                final SqlWithParams parsed = checkForNamedParams(sql, batchParams(item));
+
+                if (null == statement)
+                {
+                    prepared = parsed.getSql();
+
+                    statement = keys ? connection.prepareStatement(prepared, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(prepared);
+
+                    configure(statement);
+                }
+                else if (false == prepared.equals(parsed.getSql()))
+                {
+                    throw new SQLException("Batch parameters produced different SQL [" + parsed.getSql() + "] from [" + prepared + "]");
+                }
+                setParameters(parsed.getParams(), statement);
+
+                statement.addBatch();
+
+                result.addRow();
+
+                if (++count >= maxs)
+                {
+                    batch(connection, statement, sql, keys, result);
+
+                    count = 0;
+
+                    if ((owned) && (++batch >= commit))
+                    {
+                        connection.commit();
+
+                        result.addCommit();
+
+                        batch = 0;
+                    }
+                }
+            }
+            if (count > 0)
+            {
+                batch(connection, statement, sql, keys, result);
+            }
+            if ((owned) && ((count > 0) || (batch > 0)))
+            {
+                connection.commit();
+
+                result.addCommit();
+            }
+            return result;
+        }
+        catch (SQLException e)
+        {
+            failed(connection, e);
+
+            if (owned)
+            {
+                try
+                {
+                    connection.rollback();
+                }
+                catch (SQLException r)
+                {
+                    e.addSuppressed(r);
+                }
+            }
+            throw e;
+        }
+        finally
+        {
+            if (owned)
+            {
+                try
+                {
+                    connection.setAutoCommit(true);
+                }
+                catch (SQLException e)
+                {
+                    LOG.fine("Failed to restore auto commit: " + e.getMessage());
+                }
+            }
+            invalidate(sql);
+
+            closeQuietly(connection, statement, null);
+        }
     }
 
-    public void setPreProcessConnectionHandlers(final List<IGSQLPreProcessConnectionHandler> list)
+    private void batch(final Connection connection, final PreparedStatement statement, final String sql, final boolean keys, final GSQLBatchResult result) throws SQLException
     {
-        m_precon_list = list;
-    }
+        final long time = System.nanoTime();
 
-    @Override
-    protected void setObject(final PreparedStatement statement, final int i, final Object value) throws SQLException
-    {
-        if ((null == m_setobj_list) || (m_setobj_list.isEmpty()))
-        {
-            super.setObject(statement, i, value);
-        }
-        else
+        result.addBatch(statement.executeBatch());
+
+        executed(connection, sql, null, System.nanoTime() - time);
+
+        if (keys)
         {
-            boolean done = false;
+            final ResultSet rset = statement.getGeneratedKeys();
 
-            for (IGSQLStatementSetObjectHandler handler : m_setobj_list)
+            try
             {
-                if (handler.setObject(statement, i, value))
+                final int cols = rset.getMetaData().getColumnCount();
+
+                while (rset.next())
                 {
-                    done = true;
+                    final ArrayList<Object> list = new ArrayList<Object>(cols);
 
-                    break;
+                    for (int i = 1; i <= cols; i++)
+                    {
+                        list.add(rset.getObject(i));
+                    }
+                    result.addKeys(list);
                 }
             }
-            if (false == done)
+            finally
             {
-                super.setObject(statement, i, value);
+                rset.close();
             }
         }
     }
 
-    @Override
-    protected void closeResources(final Connection connection, final Statement statement, final ResultSet results)
+    private static final List<Object> batchParams(final Object item)
     {
-        super.closeResources(connection, statement, results);
+        if (item instanceof List)
+        {
+            return new ArrayList<Object>((List<?>) item);
+        }
+        if (item instanceof Object[])
+        {
+            return new ArrayList<Object>(Arrays.asList((Object[]) item));
+        }
+        // a Map is bound by name and checkForNamedParams expects it as the only parameter, a scalar is a single positional value.
+
+        final ArrayList<Object> list = new ArrayList<Object>(1);
+
+        list.add(item);
+
+        return list;
     }
 
-    @Override
-    protected void closeResources(final Connection connection, final Statement statement)
+    public long jstream(final Writer out, final GString query) throws SQLException, IOException
+    {
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return jstream(out, asSql(query, params), params);
+    }
+
+    public long jstream(final Writer out, final String sql) throws SQLException, IOException
     {
-        super.closeResources(connection, statement);
+        return jstream(out, sql, EMPTY_PARAMS);
     }
 
-    @Override
-    protected void closeResources(final Connection connection)
+    public long jstream(final OutputStream out, final GString query) throws SQLException, IOException
     {
-        super.closeResources(connection);
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return jstream(out, asSql(query, params), params);
     }
 
-    @Override
-    protected Connection createConnection() throws SQLException
+    public long jstream(final OutputStream out, final String sql) throws SQLException, IOException
+    {
+        return jstream(out, sql, EMPTY_PARAMS);
+    }
+
+    public long jstream(final OutputStream out, final String sql, final List<Object> params) throws SQLException, IOException
+    {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(Objects.requireNonNull(out, "OutputStream was null"), StandardCharsets.UTF_8));
+
+        final long rows = jstream(writer, sql, params);
+
+        writer.flush();
+
+        return rows;
+    }
+
+    public long jstream(final Writer out, final String sql, final List<Object> params) throws SQLException, IOException
     {
-        if ((null == m_precon_list) || (m_precon_list.isEmpty()))
+        Objects.requireNonNull(out, "Writer was null");
+
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        try
         {
-            final Connection connection = super.createConnection();
+            long time = System.nanoTime();
 
-            return connection;
-        }
-        Connection connection = super.createConnection();
+            statement = prepareCached(connection, sql, params);
+
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            time = System.nanoTime();
+
+            final CountingWriter count = (null == m_instrument) ? null : new CountingWriter(out);
+
+            final Writer writer = (null == count) ? out : count;
+
+            writer.write(s_json_rows_wrapper[0]);
+
+            final long rows = jstream(results, plan(sql, results), writer, getRowObjectMapper(), isStreamLargeObjects());
+
+            writer.write(s_json_rows_wrapper[1]);
 
-        for (IGSQLPreProcessConnectionHandler handler : m_precon_list)
+            writer.flush();
+
+            mapped(sql, System.nanoTime() - time, rows, (null == count) ? -1L : count.getCount());
+
+            return rows;
+        }
+        finally
         {
-            handler.preProcessConnection(connection);
+            closeQuietly(connection, statement, results);
         }
-        return connection;
     }
 
-    @Override
-    protected AbstractQueryCommand createQueryCommand(final String sql)
+    public long copyLargeObject(final WritableByteChannel out, final GString query) throws SQLException, IOException
     {
-        return super.createQueryCommand(sql);
+        final List<Object> params = getParameters(Objects.requireNonNull(query, "GString was null"));
+
+        return copyLargeObject(out, asSql(query, params), params);
     }
 
-    @Override
-    protected AbstractQueryCommand createPreparedQueryCommand(String sql, List<Object> queryParams)
+    public long copyLargeObject(final WritableByteChannel out, final String sql, final List<Object> params) throws SQLException, IOException
     {
-        return super.createPreparedQueryCommand(sql, queryParams);
+        Objects.requireNonNull(out, "WritableByteChannel was null");
+
+        Objects.requireNonNull(sql, "SQL was null");
+
+        final Connection connection = createReadConnection(sql);
+
+        PreparedStatement statement = null;
+
+        ResultSet results = null;
+
+        try
+        {
+            long time = System.nanoTime();
+
+            statement = prepareCached(connection, sql, params);
+
+            results = executeQuery(connection, statement);
+
+            executed(connection, sql, params, System.nanoTime() - time);
+
+            time = System.nanoTime();
+
+            // the first column of the first row, bytes for binary columns and characters for text.
+
+            final long size = results.next() ? GSQLLargeObjects.copy(results, 1, out) : -1L;
+
+            mapped(sql, System.nanoTime() - time, (size < 0) ? 0L : 1L, size);
+
+            return size;
+        }
+        finally
+        {
+            closeQuietly(connection, statement, results);
+        }
     }
 
     public static final JSONObject json(final GroovyRowResult result) throws SQLException
@@ -213,134 +2198,329 @@ public class GSQL extends Sql
     {
         Objects.requireNonNull(rset, "GroovyResultSet was null");
 
-        final JSONObject object = new JSONObject();
+        if (null == mapper)
+        {
+            mapper = s_default_row_object_mapper;
+        }
+        return GSQLColumnPlan.last(rset).json(rset, mapper);
+    }
 
-        final ResultSetMetaData meta = rset.getMetaData();
+    public static final JSONArray jarr(final List<GroovyRowResult> list) throws SQLException
+    {
+        return jarr(list, s_default_row_object_mapper);
+    }
 
-        final int cols = meta.getColumnCount();
+    public static final JSONArray jarr(final List<GroovyRowResult> list, IGSQLRowObjectMapper mapper) throws SQLException
+    {
+        Objects.requireNonNull(list, "List<GroovyRowResult> was null");
+
+        final JSONArray array = new JSONArray();
 
-        if (cols < 1)
-        {
-            return object;
-        }
         if (null == mapper)
         {
             mapper = s_default_row_object_mapper;
         }
-        if (null == mapper)
+        Object[] keys = null;
+
+        String[] labs = null;
+
+        for (GroovyRowResult result : list)
         {
-            for (int i = 1; i <= cols; i++)
+            JSONObject object = null;
+
+            if (null != keys)
             {
-                final String name = StringOps.toTrimOrNull(meta.getColumnLabel(i));
+                object = json(result, keys, labs, mapper);
+            }
+            if (null == object)
+            {
+                // first row, or a row with a different shape, so trim the labels once and reuse them for the rows that follow.
 
-                if (null != name)
+                keys = result.keySet().toArray();
+
+                labs = new String[keys.length];
+
+                for (int i = 0; i < keys.length; i++)
                 {
-                    object.put(name, rset.getObject(i));
+                    labs[i] = StringOps.toTrimOrNull(keys[i].toString());
                 }
+                object = json(result, keys, labs, mapper);
             }
+            array.add(object);
         }
-        else
+        return array;
+    }
+
+    private static final JSONObject json(final GroovyRowResult result, final Object[] keys, final String[] labs, final IGSQLRowObjectMapper mapper) throws SQLException
+    {
+        if (result.size() != keys.length)
+        {
+            return null;
+        }
+        final JSONObject object = new JSONObject();
+
+        int i = 0;
+
+        for (Object item : result.entrySet())
         {
-            for (int i = 1; i <= cols; i++)
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+
+            final Object ikey = entry.getKey();
+
+            if ((ikey != keys[i]) && (false == ikey.equals(keys[i])))
             {
-                final String name = StringOps.toTrimOrNull(meta.getColumnLabel(i));
+                return null;
+            }
+            final String name = labs[i++];
 
-                if (null != name)
+            if (null != name)
+            {
+                if (null == mapper)
                 {
-                    mapper.mapObject(object, name, rset.getObject(i));
+                    object.put(name, entry.getValue());
+                }
+                else
+                {
+                    mapper.mapObject(object, name, entry.getValue());
                 }
             }
         }
         return object;
     }
 
-    public static final JSONArray jarr(final List<GroovyRowResult> list) throws SQLException
+    public static final JSONArray jarr(GroovyResultSet rset) throws SQLException
     {
-        return jarr(list, s_default_row_object_mapper);
+        return jarr(rset, s_default_row_object_mapper);
     }
 
-    public static final JSONArray jarr(final List<GroovyRowResult> list, IGSQLRowObjectMapper mapper) throws SQLException
+    public static final JSONArray jarr(final GroovyResultSet rset, IGSQLRowObjectMapper mapper) throws SQLException
     {
-        Objects.requireNonNull(list, "List<GroovyRowResult> was null");
+        Objects.requireNonNull(rset, "GroovyResultSet was null");
+
+        return jarr(rset, GSQLColumnPlan.make(rset), mapper);
+    }
+
+    public static final JSONArray jarr(final ResultSet rset, final GSQLColumnPlan plan, IGSQLRowObjectMapper mapper) throws SQLException
+    {
+        Objects.requireNonNull(rset, "ResultSet was null");
+
+        Objects.requireNonNull(plan, "GSQLColumnPlan was null");
 
         final JSONArray array = new JSONArray();
 
+        if (plan.getColumnCount() < 1)
+        {
+            return array;
+        }
         if (null == mapper)
         {
             mapper = s_default_row_object_mapper;
         }
-        for (GroovyRowResult result : list)
+        while (rset.next())
         {
-            array.add(json(result, mapper));
+            array.add(plan.json(rset, mapper));
         }
         return array;
     }
 
-    public static final JSONArray jarr(GroovyResultSet rset) throws SQLException
+    public static final long jstream(final ResultSet rset, final Writer out) throws SQLException, IOException
     {
-        return jarr(rset, s_default_row_object_mapper);
+        return jstream(rset, out, s_default_row_object_mapper);
     }
 
-    public static final JSONArray jarr(final GroovyResultSet rset, IGSQLRowObjectMapper mapper) throws SQLException
+    public static final long jstream(final ResultSet rset, final Writer out, final IGSQLRowObjectMapper mapper) throws SQLException, IOException
     {
-        Objects.requireNonNull(rset, "GroovyResultSet was null");
+        Objects.requireNonNull(rset, "ResultSet was null");
 
-        final JSONArray array = new JSONArray();
+        return jstream(rset, GSQLColumnPlan.make(rset), out, mapper);
+    }
+
+    public static final long jstream(final ResultSet rset, final GSQLColumnPlan plan, final Writer out, IGSQLRowObjectMapper mapper) throws SQLException, IOException
+    {
+        return jstream(rset, plan, out, mapper, false);
+    }
 
-        final ResultSetMetaData meta = rset.getMetaData();
+    public static final long jstream(final ResultSet rset, final GSQLColumnPlan plan, final Writer out, IGSQLRowObjectMapper mapper, final boolean large) throws SQLException, IOException
+    {
+        Objects.requireNonNull(rset, "ResultSet was null");
+
+        Objects.requireNonNull(plan, "GSQLColumnPlan was null");
+
+        Objects.requireNonNull(out, "Writer was null");
+
+        out.write('[');
 
-        final int cols = meta.getColumnCount();
+        long rows = 0;
 
-        if (cols < 1)
+        if (plan.getColumnCount() > 0)
         {
-            return array;
+            if (null == mapper)
+            {
+                mapper = s_default_row_object_mapper;
+            }
+            // large columns are copied through one fixed buffer instead of being read whole by getObject().
+
+            final char[] buffer = ((large) && (plan.hasLargeObjects())) ? new char[GSQLLargeObjects.BUFFER_SIZE] : null;
+
+            while (rset.next())
+            {
+                if (rows++ > 0)
+                {
+                    out.write(',');
+                }
+                if (null == buffer)
+                {
+                    out.write(plan.json(rset, mapper).toJSONString());
+                }
+                else
+                {
+                    GSQLLargeObjects.json(rset, plan, out, mapper, buffer);
+                }
+            }
         }
-        final String[] labs = new String[cols + 1];// this is hacky + 1 so I don't have to keep doing an index subtract - 1 in the loops.
+        out.write(']');
+
+        return rows;
+    }
+
+    private static final String[] jrowsWrapper()
+    {
+        // derive the envelope from JSONObject itself so streamed output has the same shape as jrows()
+
+        final String wrap = new JSONObject(new JSONArray()).toJSONString();
+
+        final int indx = wrap.indexOf("[]");
 
-        for (int i = 1; i <= cols; i++)
+        return new String[] { wrap.substring(0, indx), wrap.substring(indx + 2) };
+    }
+
+    static final long utf8(final CharSequence chars)
+    {
+        return utf8(chars, 0, chars.length());
+    }
+
+    static final long utf8(final CharSequence chars, final int off, final int len)
+    {
+        long size = 0L;
+
+        for (int i = off, end = off + len; i < end; i++)
         {
-            labs[i] = StringOps.toTrimOrNull(meta.getColumnLabel(i));
+            size += utf8(chars.charAt(i));
         }
-        if (null == mapper)
+        return size;
+    }
+
+    private static final int utf8(final char c)
+    {
+        // each half of a surrogate pair counts 2, the pair is 4 bytes.
+
+        if (c < 0x80)
         {
-            mapper = s_default_row_object_mapper;
+            return 1;
         }
-        if (null == mapper)
+        if ((c < 0x800) || (Character.isSurrogate(c)))
         {
-            while (rset.next())
-            {
-                final JSONObject object = new JSONObject();
+            return 2;
+        }
+        return 3;
+    }
 
-                for (int i = 1; i <= cols; i++)
-                {
-                    final String name = labs[i];
+    private static final class CountingWriter extends FilterWriter
+    {
+        private long m_count;
 
-                    if (null != name)
-                    {
-                        object.put(name, rset.getObject(i));
-                    }
-                }
-                array.add(object);
-            }
+        private CountingWriter(final Writer out)
+        {
+            super(out);
         }
-        else
+
+        @Override
+        public void write(final int c) throws IOException
         {
-            while (rset.next())
+            out.write(c);
+
+            m_count += utf8((char) c);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException
+        {
+            out.write(cbuf, off, len);
+
+            m_count += utf8(CharBuffer.wrap(cbuf), off, len);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException
+        {
+            out.write(str, off, len);
+
+            m_count += utf8(str, off, len);
+        }
+
+        private long getCount()
+        {
+            return m_count;
+        }
+    }
+
+    private static final class Checkout
+    {
+        private final GSQLConcurrencyLimiter m_limiter;
+
+        private final GSQLCircuitBreaker     m_breaker;
+
+        private final long                   m_epoch;
+
+        private final long                   m_time    = System.nanoTime();
+
+        private long                         m_execute = -1L;
+
+        private boolean                      m_pinned;
+
+        private GSQLInFlightCounter          m_flight;
+
+        private SQLException                 m_failure;
+
+        private Checkout(final GSQLConcurrencyLimiter limiter, final GSQLCircuitBreaker breaker, final long epoch)
+        {
+            m_limiter = limiter;
+
+            m_breaker = breaker;
+
+            m_epoch = epoch;
+        }
+
+        private boolean isAdmitted()
+        {
+            return (null != m_limiter) || (null != m_breaker);
+        }
+
+        private void finish(final SQLException e)
+        {
+            final SQLException failure = (null != e) ? e : m_failure;
+
+            final boolean dropped = (null != failure) && (GSQLCircuitBreaker.isFailure(failure));
+
+            if (null != m_limiter)
             {
-                final JSONObject object = new JSONObject();
+                // cursors and units of work hold their connection as long as the caller likes, only their statements say anything about the database.
 
-                for (int i = 1; i <= cols; i++)
-                {
-                    final String name = labs[i];
+                final long nanos = (m_execute >= 0) ? m_execute : (m_pinned ? 0L : System.nanoTime() - m_time);
 
-                    if (null != name)
-                    {
-                        mapper.mapObject(object, name, rset.getObject(i));
-                    }
+                m_limiter.release(nanos, dropped);
+            }
+            if (null != m_breaker)
+            {
+                if (dropped)
+                {
+                    m_breaker.failure(m_epoch);
+                }
+                else
+                {
+                    m_breaker.success(m_epoch);
                 }
-                array.add(object);
             }
         }
-        return array;
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GSQLAsyncExecutor implements Closeable
+{
+    private final ThreadPoolExecutor m_executor;
+
+    private final int                m_depth;
+
+    private final boolean            m_caller_runs;
+
+    private final AtomicLong         m_submitted   = new AtomicLong();
+
+    private final AtomicLong         m_rejected    = new AtomicLong();
+
+    private final AtomicLong         m_caller_ran  = new AtomicLong();
+
+    private final AtomicLong         m_failed      = new AtomicLong();
+
+    public GSQLAsyncExecutor(final String name, final int threads, final int depth, final boolean caller)
+    {
+        final int size = Math.max(1, threads);
+
+        m_depth = Math.max(1, depth);
+
+        m_caller_runs = caller;
+
+        m_executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(m_depth), new AsyncThreadFactory(name), new ThreadPoolExecutor.AbortPolicy());
+
+        m_executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> CompletableFuture<T> submit(final Callable<T> task)
+    {
+        Objects.requireNonNull(task, "Callable was null");
+
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        final Runnable runnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (future.isDone())
+                {
+                    return;
+                }
+                try
+                {
+                    future.complete(task.call());
+                }
+                catch (Throwable e)
+                {
+                    m_failed.incrementAndGet();
+
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+        m_submitted.incrementAndGet();
+
+        try
+        {
+            m_executor.execute(runnable);
+        }
+        catch (RejectedExecutionException e)
+        {
+            if ((m_caller_runs) && (false == m_executor.isShutdown()))
+            {
+                // backpressure, the submitting thread pays for the query instead of queueing more work.
+
+                m_caller_ran.incrementAndGet();
+
+                runnable.run();
+            }
+            else
+            {
+                m_rejected.incrementAndGet();
+
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    public int getThreadCount()
+    {
+        return m_executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount()
+    {
+        return m_executor.getActiveCount();
+    }
+
+    public int getQueueDepth()
+    {
+        return m_executor.getQueue().size();
+    }
+
+    public int getMaximumQueueDepth()
+    {
+        return m_depth;
+    }
+
+    public boolean isCallerRuns()
+    {
+        return m_caller_runs;
+    }
+
+    public long getSubmittedCount()
+    {
+        return m_submitted.get();
+    }
+
+    public long getCompletedCount()
+    {
+        return m_executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount()
+    {
+        return m_rejected.get();
+    }
+
+    public long getCallerRunsCount()
+    {
+        return m_caller_ran.get();
+    }
+
+    public long getFailedCount()
+    {
+        return m_failed.get();
+    }
+
+    public boolean isShutdown()
+    {
+        return m_executor.isShutdown();
+    }
+
+    @Override
+    public void close()
+    {
+        m_executor.shutdown();
+    }
+
+    private static final class AsyncThreadFactory implements ThreadFactory
+    {
+        private final String        m_name;
+
+        private final AtomicInteger m_count = new AtomicInteger();
+
+        private AsyncThreadFactory(final String name)
+        {
+            m_name = "GSQLAsync-" + ((null == name) ? "default" : name) + "-";
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, m_name + m_count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLBatchResult
+{
+    private long                     m_rows;
+
+    private long                     m_batches;
+
+    private long                     m_commits;
+
+    private long                     m_updates;
+
+    private long                     m_unknown;
+
+    private final List<List<Object>> m_keys = new ArrayList<List<Object>>();
+
+    void addBatch(final int[] counts)
+    {
+        m_batches++;
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] >= 0)
+            {
+                m_updates += counts[i];
+            }
+            else
+            {
+                m_unknown++;
+            }
+        }
+    }
+
+    void addRow()
+    {
+        m_rows++;
+    }
+
+    void addCommit()
+    {
+        m_commits++;
+    }
+
+    void addKeys(final List<Object> keys)
+    {
+        m_keys.add(keys);
+    }
+
+    public long getRowCount()
+    {
+        return m_rows;
+    }
+
+    public long getBatchCount()
+    {
+        return m_batches;
+    }
+
+    public long getCommitCount()
+    {
+        return m_commits;
+    }
+
+    public long getUpdateCount()
+    {
+        return m_updates;
+    }
+
+    public long getUnknownUpdateCount()
+    {
+        return m_unknown;
+    }
+
+    public List<List<Object>> getGeneratedKeys()
+    {
+        return Collections.unmodifiableList(m_keys);
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("rows", getRowCount());
+
+        json.put("batches", getBatchCount());
+
+        json.put("commits", getCommitCount());
+
+        json.put("updates", getUpdateCount());
+
+        json.put("unknown", getUnknownUpdateCount());
+
+        if (false == m_keys.isEmpty())
+        {
+            final JSONArray keys = new JSONArray();
+
+            for (List<Object> list : m_keys)
+            {
+                final JSONArray item = new JSONArray();
+
+                item.addAll(list);
+
+                keys.add(item);
+            }
+            json.put("keys", keys);
+        }
+        return json;
+    }
+}
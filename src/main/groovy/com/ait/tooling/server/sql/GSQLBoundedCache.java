@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GSQLBoundedCache<K, V>
+{
+    private final LinkedHashMap<K, V> m_entries;
+
+    private int                       m_maximum;
+
+    private long                      m_evicted;
+
+    public GSQLBoundedCache(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+
+        m_entries = new LinkedHashMap<K, V>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest)
+            {
+                if (size() > m_maximum)
+                {
+                    m_evicted++;
+
+                    onEvicted(eldest.getKey(), eldest.getValue());
+
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    protected void onEvicted(final K key, final V value)
+    {
+    }
+
+    public synchronized V get(final K key)
+    {
+        return m_entries.get(key);
+    }
+
+    public synchronized V put(final K key, final V value)
+    {
+        return m_entries.put(key, value);
+    }
+
+    public synchronized V remove(final K key)
+    {
+        return m_entries.remove(key);
+    }
+
+    public synchronized void clear()
+    {
+        m_entries.clear();
+    }
+
+    public synchronized int size()
+    {
+        return m_entries.size();
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return m_evicted;
+    }
+
+    public synchronized int getMaximumSize()
+    {
+        return m_maximum;
+    }
+
+    public synchronized void setMaximumSize(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+
+        while (m_entries.size() > m_maximum)
+        {
+            final Map.Entry<K, V> eldest = m_entries.entrySet().iterator().next();
+
+            m_entries.remove(eldest.getKey());
+
+            m_evicted++;
+
+            onEvicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLCircuitBreaker
+{
+    public static final int  DEFAULT_FAILURE_THRESHOLD = 5;
+
+    public static final long DEFAULT_OPEN_MILLIS       = 10000L;
+
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private State            m_state                   = State.CLOSED;
+
+    private int              m_threshold               = DEFAULT_FAILURE_THRESHOLD;
+
+    private long             m_open_nanos              = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_MILLIS);
+
+    private long             m_opened;
+
+    private int              m_failures;
+
+    private long             m_failure_count;
+
+    private long             m_open_count;
+
+    private long             m_rejected;
+
+    public static final boolean isFailure(final SQLException e)
+    {
+        // only errors that say the database is slow or unreachable, a bad statement still got an answer.
+
+        if ((e instanceof SQLTimeoutException) || (e instanceof SQLTransientConnectionException) || (e instanceof SQLNonTransientConnectionException) || (e instanceof SQLRecoverableException))
+        {
+            return true;
+        }
+        final String state = e.getSQLState();
+
+        return (null != state) && ((state.startsWith("08")) || (state.equals("57014")) || (state.equals("HYT00")) || (state.equals("HYT01")));
+    }
+
+    public boolean allow()
+    {
+        return (admit() >= 0);
+    }
+
+    public synchronized long admit()
+    {
+        // the epoch counts trips, an outcome only counts when nothing tripped the breaker since its call was admitted.
+
+        if (State.CLOSED == m_state)
+        {
+            return m_open_count;
+        }
+        if ((State.OPEN == m_state) && ((System.nanoTime() - m_opened) >= m_open_nanos))
+        {
+            // let a single trial through, its outcome closes or reopens the breaker.
+
+            m_state = State.HALF_OPEN;
+
+            return m_open_count;
+        }
+        m_rejected++;
+
+        return -1L;
+    }
+
+    public synchronized void success()
+    {
+        success(m_open_count);
+    }
+
+    public synchronized void success(final long epoch)
+    {
+        // a slow call admitted before the trip says nothing about the database now.
+
+        if (epoch != m_open_count)
+        {
+            return;
+        }
+        m_failures = 0;
+
+        m_state = State.CLOSED;
+    }
+
+    public synchronized void failure()
+    {
+        failure(m_open_count);
+    }
+
+    public synchronized void failure(final long epoch)
+    {
+        m_failure_count++;
+
+        if (epoch != m_open_count)
+        {
+            return;
+        }
+        m_failures++;
+
+        if ((State.HALF_OPEN == m_state) || ((State.CLOSED == m_state) && (m_failures >= m_threshold)))
+        {
+            m_state = State.OPEN;
+
+            m_opened = System.nanoTime();
+
+            m_open_count++;
+        }
+    }
+
+    public synchronized void cancel()
+    {
+        // an admitted trial that never ran, the next caller gets to try instead.
+
+        if (State.HALF_OPEN == m_state)
+        {
+            m_state = State.OPEN;
+        }
+    }
+
+    public synchronized void reset()
+    {
+        m_failures = 0;
+
+        m_state = State.CLOSED;
+    }
+
+    public synchronized State getState()
+    {
+        return m_state;
+    }
+
+    public synchronized int getFailureThreshold()
+    {
+        return m_threshold;
+    }
+
+    public synchronized void setFailureThreshold(final int threshold)
+    {
+        m_threshold = Math.max(1, threshold);
+    }
+
+    public synchronized long getOpenMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(m_open_nanos);
+    }
+
+    public synchronized void setOpenMillis(final long millis)
+    {
+        m_open_nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, millis));
+    }
+
+    public synchronized int getConsecutiveFailures()
+    {
+        return m_failures;
+    }
+
+    public synchronized long getFailureCount()
+    {
+        return m_failure_count;
+    }
+
+    public synchronized long getOpenCount()
+    {
+        return m_open_count;
+    }
+
+    public synchronized long getRejectedCount()
+    {
+        return m_rejected;
+    }
+
+    public synchronized JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("state", m_state.name());
+
+        json.put("consecutive", m_failures);
+
+        json.put("failures", m_failure_count);
+
+        json.put("opened", m_open_count);
+
+        json.put("rejected", m_rejected);
+
+        return json;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public final class GSQLColumnPlan
+{
+    private static final ThreadLocal<LastPlan> s_last_plan = new ThreadLocal<LastPlan>();
+
+    private final int                          m_cols;
+
+    private final String[]                     m_labs;
+
+    private final int[]                        m_type;
+
+    private final GSQLColumnReader[]           m_read;
+
+    private final boolean[]                    m_large;
+
+    private final boolean                      m_has_large;
+
+    public static final GSQLColumnPlan make(final ResultSetMetaData meta) throws SQLException
+    {
+        return new GSQLColumnPlan(Objects.requireNonNull(meta, "ResultSetMetaData was null"));
+    }
+
+    public static final GSQLColumnPlan make(final ResultSet rset) throws SQLException
+    {
+        return make(Objects.requireNonNull(rset, "ResultSet was null").getMetaData());
+    }
+
+    public static final GSQLColumnPlan last(final ResultSet rset) throws SQLException
+    {
+        Objects.requireNonNull(rset, "ResultSet was null");
+
+        // per-row callers such as eachRow closures hand us the same ResultSet again and again.
+
+        final LastPlan last = s_last_plan.get();
+
+        if ((null != last) && (last.m_rset.get() == rset))
+        {
+            return last.m_plan;
+        }
+        final GSQLColumnPlan plan = make(rset);
+
+        s_last_plan.set(new LastPlan(rset, plan));
+
+        return plan;
+    }
+
+    private GSQLColumnPlan(final ResultSetMetaData meta) throws SQLException
+    {
+        m_cols = meta.getColumnCount();
+
+        m_labs = new String[m_cols + 1];
+
+        m_type = new int[m_cols + 1];
+
+        m_read = new GSQLColumnReader[m_cols + 1];
+
+        m_large = new boolean[m_cols + 1];
+
+        boolean large = false;
+
+        for (int i = 1; i <= m_cols; i++)
+        {
+            m_labs[i] = StringOps.toTrimOrNull(meta.getColumnLabel(i));
+
+            m_type[i] = meta.getColumnType(i);
+
+            m_read[i] = GSQLColumnReader.select(meta, i);
+
+            m_large[i] = GSQLLargeObjects.isLargeObjectType(m_type[i]);
+
+            large = (large || m_large[i]);
+        }
+        m_has_large = large;
+    }
+
+    public boolean matches(final ResultSetMetaData meta) throws SQLException
+    {
+        if (meta.getColumnCount() != m_cols)
+        {
+            return false;
+        }
+        // a renamed column keeps its type, so the labels have to match as well or the old keys stick.
+
+        for (int i = 1; i <= m_cols; i++)
+        {
+            if ((meta.getColumnType(i) != m_type[i]) || (false == Objects.equals(m_labs[i], StringOps.toTrimOrNull(meta.getColumnLabel(i)))))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getColumnCount()
+    {
+        return m_cols;
+    }
+
+    public String getColumnLabel(final int i)
+    {
+        return m_labs[i];
+    }
+
+    public int getColumnType(final int i)
+    {
+        return m_type[i];
+    }
+
+    public GSQLColumnReader getColumnReader(final int i)
+    {
+        return m_read[i];
+    }
+
+    public boolean isLargeObject(final int i)
+    {
+        return m_large[i];
+    }
+
+    public boolean hasLargeObjects()
+    {
+        return m_has_large;
+    }
+
+    public Object read(final ResultSet rset, final int i) throws SQLException
+    {
+        return m_read[i].read(rset, i);
+    }
+
+    public JSONObject json(final ResultSet rset, final IGSQLRowObjectMapper mapper) throws SQLException
+    {
+        final JSONObject object = new JSONObject();
+
+        if (null == mapper)
+        {
+            for (int i = 1; i <= m_cols; i++)
+            {
+                final String name = m_labs[i];
+
+                if (null != name)
+                {
+                    object.put(name, m_read[i].read(rset, i));
+                }
+            }
+        }
+        else
+        {
+            for (int i = 1; i <= m_cols; i++)
+            {
+                final String name = m_labs[i];
+
+                if (null != name)
+                {
+                    mapper.mapObject(object, name, m_read[i].read(rset, i));
+                }
+            }
+        }
+        return object;
+    }
+
+    private static final class LastPlan
+    {
+        private final WeakReference<ResultSet> m_rset;
+
+        private final GSQLColumnPlan           m_plan;
+
+        private LastPlan(final ResultSet rset, final GSQLColumnPlan plan)
+        {
+            m_rset = new WeakReference<ResultSet>(rset);
+
+            m_plan = plan;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public class GSQLColumnPlanCache extends GSQLBoundedCache<String, GSQLColumnPlan>
+{
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    public GSQLColumnPlanCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public GSQLColumnPlanCache(final int maximum)
+    {
+        super(maximum);
+    }
+
+    public GSQLColumnPlan plan(final String sql, final ResultSet rset) throws SQLException
+    {
+        final ResultSetMetaData meta = rset.getMetaData();
+
+        final GSQLColumnPlan plan = get(sql);
+
+        if ((null != plan) && (plan.matches(meta)))
+        {
+            return plan;
+        }
+        final GSQLColumnPlan make = GSQLColumnPlan.make(meta);
+
+        put(sql, make);
+
+        return make;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+public enum GSQLColumnReader
+{
+    LONG
+    {
+        @Override
+        public Object read(final ResultSet rset, final int i) throws SQLException
+        {
+            final long valu = rset.getLong(i);
+
+            if (rset.wasNull())
+            {
+                return null;
+            }
+            return Long.valueOf(valu);
+        }
+    },
+    INTEGER
+    {
+        @Override
+        public Object read(final ResultSet rset, final int i) throws SQLException
+        {
+            final int valu = rset.getInt(i);
+
+            if (rset.wasNull())
+            {
+                return null;
+            }
+            return Integer.valueOf(valu);
+        }
+    },
+    DOUBLE
+    {
+        @Override
+        public Object read(final ResultSet rset, final int i) throws SQLException
+        {
+            final double valu = rset.getDouble(i);
+
+            if (rset.wasNull())
+            {
+                return null;
+            }
+            return Double.valueOf(valu);
+        }
+    },
+    STRING
+    {
+        @Override
+        public Object read(final ResultSet rset, final int i) throws SQLException
+        {
+            return rset.getString(i);
+        }
+    },
+    OBJECT
+    {
+        @Override
+        public Object read(final ResultSet rset, final int i) throws SQLException
+        {
+            return rset.getObject(i);
+        }
+    };
+
+    public abstract Object read(ResultSet rset, int i) throws SQLException;
+
+    public static final GSQLColumnReader select(final ResultSetMetaData meta, final int i) throws SQLException
+    {
+        switch (meta.getColumnType(i))
+        {
+            case Types.BIGINT:
+                // unsigned BIGINT comes back from getObject() as BigInteger on some drivers.
+
+                return meta.isSigned(i) ? LONG : OBJECT;
+            case Types.INTEGER:
+                return meta.isSigned(i) ? INTEGER : OBJECT;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return DOUBLE;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return STRING;
+            default:
+                return OBJECT;
+        }
+    }
+}
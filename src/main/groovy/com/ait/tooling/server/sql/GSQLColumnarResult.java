@@ -0,0 +1,753 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLColumnarResult
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Column[]   m_cols;
+
+    private int              m_rows;
+
+    public static final GSQLColumnarResult make(final ResultSet rset) throws SQLException
+    {
+        return make(rset, GSQLColumnPlan.make(rset));
+    }
+
+    public static final GSQLColumnarResult make(final ResultSet rset, final GSQLColumnPlan plan) throws SQLException
+    {
+        Objects.requireNonNull(rset, "ResultSet was null");
+
+        final GSQLColumnarResult result = new GSQLColumnarResult(Objects.requireNonNull(plan, "GSQLColumnPlan was null"));
+
+        final Column[] cols = result.m_cols;
+
+        int rows = 0;
+
+        while (rset.next())
+        {
+            for (int i = 1; i < cols.length; i++)
+            {
+                cols[i].read(rset, i, rows);
+            }
+            rows++;
+        }
+        result.m_rows = rows;
+
+        for (int i = 1; i < cols.length; i++)
+        {
+            cols[i].trim(rows);
+        }
+        return result;
+    }
+
+    private GSQLColumnarResult(final GSQLColumnPlan plan)
+    {
+        final int size = plan.getColumnCount();
+
+        m_cols = new Column[size + 1];
+
+        for (int i = 1; i <= size; i++)
+        {
+            final String name = plan.getColumnLabel(i);
+
+            switch (plan.getColumnReader(i))
+            {
+                case LONG:
+                    m_cols[i] = new LongColumn(name);
+                    break;
+                case INTEGER:
+                    m_cols[i] = new IntColumn(name);
+                    break;
+                case DOUBLE:
+                    m_cols[i] = new DoubleColumn(name);
+                    break;
+                case STRING:
+                    m_cols[i] = new StringColumn(name);
+                    break;
+                default:
+                    m_cols[i] = new ObjectColumn(name);
+                    break;
+            }
+        }
+    }
+
+    public int getRowCount()
+    {
+        return m_rows;
+    }
+
+    public int getColumnCount()
+    {
+        return m_cols.length - 1;
+    }
+
+    public String getColumnLabel(final int col)
+    {
+        return m_cols[col].m_name;
+    }
+
+    public String getColumnType(final int col)
+    {
+        return m_cols[col].type();
+    }
+
+    public int findColumn(final String name)
+    {
+        for (int i = 1; i < m_cols.length; i++)
+        {
+            if ((null != m_cols[i].m_name) && (m_cols[i].m_name.equalsIgnoreCase(name)))
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column [" + name + "] not found");
+    }
+
+    public boolean isNull(final int col, final int row)
+    {
+        return m_cols[col].m_nulls.get(row);
+    }
+
+    public long getLong(final int col, final int row)
+    {
+        final Column column = m_cols[col];
+
+        if (column instanceof LongColumn)
+        {
+            return ((LongColumn) column).m_data[row];
+        }
+        if (column instanceof IntColumn)
+        {
+            return ((IntColumn) column).m_data[row];
+        }
+        final Object value = column.get(row);
+
+        return (value instanceof Number) ? ((Number) value).longValue() : 0L;
+    }
+
+    public int getInt(final int col, final int row)
+    {
+        final Column column = m_cols[col];
+
+        if (column instanceof IntColumn)
+        {
+            return ((IntColumn) column).m_data[row];
+        }
+        return (int) getLong(col, row);
+    }
+
+    public double getDouble(final int col, final int row)
+    {
+        final Column column = m_cols[col];
+
+        if (column instanceof DoubleColumn)
+        {
+            return ((DoubleColumn) column).m_data[row];
+        }
+        final Object value = column.get(row);
+
+        return (value instanceof Number) ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    public String getString(final int col, final int row)
+    {
+        final Object value = m_cols[col].get(row);
+
+        return (null == value) ? null : value.toString();
+    }
+
+    public Object getObject(final int col, final int row)
+    {
+        return m_cols[col].get(row);
+    }
+
+    public long[] getLongColumn(final int col)
+    {
+        return ((LongColumn) m_cols[col]).m_data;
+    }
+
+    public int[] getIntColumn(final int col)
+    {
+        return ((IntColumn) m_cols[col]).m_data;
+    }
+
+    public double[] getDoubleColumn(final int col)
+    {
+        return ((DoubleColumn) m_cols[col]).m_data;
+    }
+
+    public List<String> getDictionary(final int col)
+    {
+        return ((StringColumn) m_cols[col]).m_dict;
+    }
+
+    public int[] getDictionaryCodes(final int col)
+    {
+        return ((StringColumn) m_cols[col]).m_code;
+    }
+
+    public JSONArray toJSONArray() throws SQLException
+    {
+        return toJSONArray(null);
+    }
+
+    public JSONArray toJSONArray(final IGSQLRowObjectMapper mapper) throws SQLException
+    {
+        final JSONArray list = new JSONArray();
+
+        for (int row = 0; row < m_rows; row++)
+        {
+            final JSONObject object = new JSONObject();
+
+            for (int i = 1; i < m_cols.length; i++)
+            {
+                final String name = m_cols[i].m_name;
+
+                if (null != name)
+                {
+                    if (null == mapper)
+                    {
+                        object.put(name, m_cols[i].get(row));
+                    }
+                    else
+                    {
+                        mapper.mapObject(object, name, m_cols[i].get(row));
+                    }
+                }
+            }
+            list.add(object);
+        }
+        return list;
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONArray cols = new JSONArray();
+
+        final JSONObject data = new JSONObject();
+
+        for (int i = 1; i < m_cols.length; i++)
+        {
+            final Column column = m_cols[i];
+
+            final JSONObject meta = new JSONObject();
+
+            meta.put("name", column.m_name);
+
+            meta.put("type", column.type());
+
+            final JSONArray valu = new JSONArray();
+
+            if (column instanceof StringColumn)
+            {
+                final JSONArray dict = new JSONArray();
+
+                dict.addAll(((StringColumn) column).m_dict);
+
+                meta.put("dictionary", dict);
+
+                for (int row = 0; row < m_rows; row++)
+                {
+                    valu.add(column.m_nulls.get(row) ? null : ((StringColumn) column).m_code[row]);
+                }
+            }
+            else
+            {
+                for (int row = 0; row < m_rows; row++)
+                {
+                    valu.add(column.get(row));
+                }
+            }
+            cols.add(meta);
+
+            data.put(column.m_name, valu);
+        }
+        final JSONObject json = new JSONObject();
+
+        json.put("columns", cols);
+
+        json.put("rows", m_rows);
+
+        json.put("data", data);
+
+        return json;
+    }
+
+    public String toJSONString()
+    {
+        final StringWriter out = new StringWriter();
+
+        try
+        {
+            writeJSON(out);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    public void writeJSON(final Writer out) throws IOException
+    {
+        // same shape as toJSONObject(), written straight from the primitive arrays without boxing.
+
+        out.write("{\"columns\":[");
+
+        for (int i = 1; i < m_cols.length; i++)
+        {
+            final Column column = m_cols[i];
+
+            if (i > 1)
+            {
+                out.write(',');
+            }
+            out.write("{\"name\":");
+
+            quote(out, column.m_name);
+
+            out.write(",\"type\":\"");
+
+            out.write(column.type());
+
+            out.write('"');
+
+            if (column instanceof StringColumn)
+            {
+                out.write(",\"dictionary\":[");
+
+                final List<String> dict = ((StringColumn) column).m_dict;
+
+                for (int d = 0; d < dict.size(); d++)
+                {
+                    if (d > 0)
+                    {
+                        out.write(',');
+                    }
+                    quote(out, dict.get(d));
+                }
+                out.write(']');
+            }
+            out.write('}');
+        }
+        out.write("],\"rows\":");
+
+        out.write(Integer.toString(m_rows));
+
+        out.write(",\"data\":{");
+
+        for (int i = 1; i < m_cols.length; i++)
+        {
+            final Column column = m_cols[i];
+
+            if (i > 1)
+            {
+                out.write(',');
+            }
+            quote(out, column.m_name);
+
+            out.write(":[");
+
+            for (int row = 0; row < m_rows; row++)
+            {
+                if (row > 0)
+                {
+                    out.write(',');
+                }
+                if (column.m_nulls.get(row))
+                {
+                    out.write("null");
+                }
+                else
+                {
+                    column.write(out, row);
+                }
+            }
+            out.write(']');
+        }
+        out.write("}}");
+    }
+
+    private static final void quote(final Writer out, final String text) throws IOException
+    {
+        if (null == text)
+        {
+            out.write("null");
+
+            return;
+        }
+        out.write('"');
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+
+            switch (c)
+            {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        out.write(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        out.write(c);
+                    }
+                    break;
+            }
+        }
+        out.write('"');
+    }
+
+    private static abstract class Column
+    {
+        protected final String m_name;
+
+        protected final BitSet m_nulls = new BitSet();
+
+        protected Column(final String name)
+        {
+            m_name = name;
+        }
+
+        abstract String type();
+
+        abstract void read(ResultSet rset, int i, int row) throws SQLException;
+
+        abstract void trim(int rows);
+
+        abstract Object get(int row);
+
+        abstract void write(Writer out, int row) throws IOException;
+
+        protected static final int grow(final int length, final int row)
+        {
+            return (row < length) ? length : Math.max(INITIAL_CAPACITY, length + (length >> 1));
+        }
+    }
+
+    private static final class LongColumn extends Column
+    {
+        private long[] m_data = new long[INITIAL_CAPACITY];
+
+        private LongColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        String type()
+        {
+            return "long";
+        }
+
+        @Override
+        void read(final ResultSet rset, final int i, final int row) throws SQLException
+        {
+            if (row >= m_data.length)
+            {
+                m_data = Arrays.copyOf(m_data, grow(m_data.length, row));
+            }
+            m_data[row] = rset.getLong(i);
+
+            if (rset.wasNull())
+            {
+                m_nulls.set(row);
+            }
+        }
+
+        @Override
+        void trim(final int rows)
+        {
+            m_data = Arrays.copyOf(m_data, rows);
+        }
+
+        @Override
+        Object get(final int row)
+        {
+            return m_nulls.get(row) ? null : Long.valueOf(m_data[row]);
+        }
+
+        @Override
+        void write(final Writer out, final int row) throws IOException
+        {
+            out.write(Long.toString(m_data[row]));
+        }
+    }
+
+    private static final class IntColumn extends Column
+    {
+        private int[] m_data = new int[INITIAL_CAPACITY];
+
+        private IntColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        String type()
+        {
+            return "int";
+        }
+
+        @Override
+        void read(final ResultSet rset, final int i, final int row) throws SQLException
+        {
+            if (row >= m_data.length)
+            {
+                m_data = Arrays.copyOf(m_data, grow(m_data.length, row));
+            }
+            m_data[row] = rset.getInt(i);
+
+            if (rset.wasNull())
+            {
+                m_nulls.set(row);
+            }
+        }
+
+        @Override
+        void trim(final int rows)
+        {
+            m_data = Arrays.copyOf(m_data, rows);
+        }
+
+        @Override
+        Object get(final int row)
+        {
+            return m_nulls.get(row) ? null : Integer.valueOf(m_data[row]);
+        }
+
+        @Override
+        void write(final Writer out, final int row) throws IOException
+        {
+            out.write(Integer.toString(m_data[row]));
+        }
+    }
+
+    private static final class DoubleColumn extends Column
+    {
+        private double[] m_data = new double[INITIAL_CAPACITY];
+
+        private DoubleColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        String type()
+        {
+            return "double";
+        }
+
+        @Override
+        void read(final ResultSet rset, final int i, final int row) throws SQLException
+        {
+            if (row >= m_data.length)
+            {
+                m_data = Arrays.copyOf(m_data, grow(m_data.length, row));
+            }
+            m_data[row] = rset.getDouble(i);
+
+            if (rset.wasNull())
+            {
+                m_nulls.set(row);
+            }
+        }
+
+        @Override
+        void trim(final int rows)
+        {
+            m_data = Arrays.copyOf(m_data, rows);
+        }
+
+        @Override
+        Object get(final int row)
+        {
+            return m_nulls.get(row) ? null : Double.valueOf(m_data[row]);
+        }
+
+        @Override
+        void write(final Writer out, final int row) throws IOException
+        {
+            final double valu = m_data[row];
+
+            // JSON has no NaN or Infinity.
+
+            out.write(((Double.isNaN(valu)) || (Double.isInfinite(valu))) ? "null" : Double.toString(valu));
+        }
+    }
+
+    private static final class StringColumn extends Column
+    {
+        private final HashMap<String, Integer> m_index = new HashMap<String, Integer>();
+
+        private final ArrayList<String>        m_dict  = new ArrayList<String>();
+
+        private int[]                          m_code  = new int[INITIAL_CAPACITY];
+
+        private StringColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        String type()
+        {
+            return "string";
+        }
+
+        @Override
+        void read(final ResultSet rset, final int i, final int row) throws SQLException
+        {
+            if (row >= m_code.length)
+            {
+                m_code = Arrays.copyOf(m_code, grow(m_code.length, row));
+            }
+            final String valu = rset.getString(i);
+
+            if (null == valu)
+            {
+                m_nulls.set(row);
+
+                m_code[row] = -1;
+
+                return;
+            }
+            Integer code = m_index.get(valu);
+
+            if (null == code)
+            {
+                code = m_dict.size();
+
+                m_dict.add(valu);
+
+                m_index.put(valu, code);
+            }
+            m_code[row] = code;
+        }
+
+        @Override
+        void trim(final int rows)
+        {
+            m_code = Arrays.copyOf(m_code, rows);
+
+            m_dict.trimToSize();
+        }
+
+        @Override
+        Object get(final int row)
+        {
+            return m_nulls.get(row) ? null : m_dict.get(m_code[row]);
+        }
+
+        @Override
+        void write(final Writer out, final int row) throws IOException
+        {
+            out.write(Integer.toString(m_code[row]));
+        }
+    }
+
+    private static final class ObjectColumn extends Column
+    {
+        private Object[] m_data = new Object[INITIAL_CAPACITY];
+
+        private ObjectColumn(final String name)
+        {
+            super(name);
+        }
+
+        @Override
+        String type()
+        {
+            return "object";
+        }
+
+        @Override
+        void read(final ResultSet rset, final int i, final int row) throws SQLException
+        {
+            if (row >= m_data.length)
+            {
+                m_data = Arrays.copyOf(m_data, grow(m_data.length, row));
+            }
+            m_data[row] = rset.getObject(i);
+
+            if (null == m_data[row])
+            {
+                m_nulls.set(row);
+            }
+        }
+
+        @Override
+        void trim(final int rows)
+        {
+            m_data = Arrays.copyOf(m_data, rows);
+        }
+
+        @Override
+        Object get(final int row)
+        {
+            return m_data[row];
+        }
+
+        @Override
+        void write(final Writer out, final int row) throws IOException
+        {
+            final Object valu = m_data[row];
+
+            if ((valu instanceof Number) || (valu instanceof Boolean))
+            {
+                out.write(valu.toString());
+            }
+            else
+            {
+                quote(out, valu.toString());
+            }
+        }
+    }
+}
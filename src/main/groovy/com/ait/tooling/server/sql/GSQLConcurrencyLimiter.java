@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLConcurrencyLimiter
+{
+    public static final int    DEFAULT_INITIAL_LIMIT  = 20;
+
+    public static final int    DEFAULT_MINIMUM_LIMIT  = 1;
+
+    public static final int    DEFAULT_MAXIMUM_LIMIT  = 200;
+
+    public static final double DEFAULT_BACKOFF_RATIO  = 0.9;
+
+    public static final long   DEFAULT_TIMEOUT_MILLIS = 5000L;
+
+    private int                m_limit;
+
+    private int                m_minimum              = DEFAULT_MINIMUM_LIMIT;
+
+    private int                m_maximum              = DEFAULT_MAXIMUM_LIMIT;
+
+    private double             m_backoff              = DEFAULT_BACKOFF_RATIO;
+
+    private long               m_timeout              = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+    private int                m_in_flight;
+
+    private long               m_rejected;
+
+    private long               m_dropped;
+
+    public GSQLConcurrencyLimiter()
+    {
+        this(DEFAULT_INITIAL_LIMIT);
+    }
+
+    public GSQLConcurrencyLimiter(final int limit)
+    {
+        m_limit = Math.max(1, limit);
+    }
+
+    public synchronized boolean acquire()
+    {
+        if (m_in_flight >= m_limit)
+        {
+            m_rejected++;
+
+            return false;
+        }
+        m_in_flight++;
+
+        return true;
+    }
+
+    public synchronized void release(final long nanos, final boolean dropped)
+    {
+        // AIMD, a timeout or a call slower than the timeout cuts the limit, a success while busy grows it by one.
+
+        if ((dropped) || (nanos > m_timeout))
+        {
+            m_dropped++;
+
+            m_limit = Math.max(m_minimum, Math.min(m_limit - 1, (int) (m_limit * m_backoff)));
+        }
+        else if ((m_in_flight * 2) >= m_limit)
+        {
+            m_limit = Math.min(m_maximum, m_limit + 1);
+        }
+        m_in_flight = Math.max(0, m_in_flight - 1);
+    }
+
+    public synchronized int getLimit()
+    {
+        return m_limit;
+    }
+
+    public synchronized void setLimit(final int limit)
+    {
+        m_limit = Math.max(m_minimum, Math.min(m_maximum, limit));
+    }
+
+    public synchronized int getInFlight()
+    {
+        return m_in_flight;
+    }
+
+    public synchronized int getMinimumLimit()
+    {
+        return m_minimum;
+    }
+
+    public synchronized void setMinimumLimit(final int minimum)
+    {
+        m_minimum = Math.max(1, minimum);
+
+        m_maximum = Math.max(m_minimum, m_maximum);
+
+        m_limit = Math.max(m_minimum, m_limit);
+    }
+
+    public synchronized int getMaximumLimit()
+    {
+        return m_maximum;
+    }
+
+    public synchronized void setMaximumLimit(final int maximum)
+    {
+        m_maximum = Math.max(m_minimum, maximum);
+
+        m_limit = Math.min(m_maximum, m_limit);
+    }
+
+    public synchronized double getBackoffRatio()
+    {
+        return m_backoff;
+    }
+
+    public synchronized void setBackoffRatio(final double backoff)
+    {
+        m_backoff = Math.max(0.1, Math.min(1.0, backoff));
+    }
+
+    public synchronized long getTimeoutMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(m_timeout);
+    }
+
+    public synchronized void setTimeoutMillis(final long millis)
+    {
+        m_timeout = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, millis));
+    }
+
+    public synchronized long getRejectedCount()
+    {
+        return m_rejected;
+    }
+
+    public synchronized long getDroppedCount()
+    {
+        return m_dropped;
+    }
+
+    public synchronized JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("limit", m_limit);
+
+        json.put("in_flight", m_in_flight);
+
+        json.put("minimum", m_minimum);
+
+        json.put("maximum", m_maximum);
+
+        json.put("rejected", m_rejected);
+
+        json.put("dropped", m_dropped);
+
+        return json;
+    }
+}
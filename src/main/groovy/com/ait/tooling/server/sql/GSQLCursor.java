@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLCursor implements Iterator<JSONObject>, Closeable
+{
+    private static final int           CURSOR_UNKNOWN = 0;
+
+    private static final int           CURSOR_ONROW   = 1;
+
+    private static final int           CURSOR_ENDED   = 2;
+
+    private final GSQL                 m_gsql;
+
+    private final String               m_sql;
+
+    private final Connection           m_connection;
+
+    private final PreparedStatement    m_statement;
+
+    private final ResultSet            m_results;
+
+    private final GSQLColumnPlan       m_plan;
+
+    private final IGSQLRowObjectMapper m_mapper;
+
+    private final boolean              m_restore;
+
+    private final long                 m_opened       = System.nanoTime();
+
+    private long                       m_rows;
+
+    private int                        m_state        = CURSOR_UNKNOWN;
+
+    private boolean                    m_closed;
+
+    GSQLCursor(final GSQL gsql, final String sql, final Connection connection, final PreparedStatement statement, final ResultSet results, final GSQLColumnPlan plan, final IGSQLRowObjectMapper mapper, final boolean restore)
+    {
+        m_gsql = gsql;
+
+        m_sql = sql;
+
+        m_connection = connection;
+
+        m_statement = statement;
+
+        m_results = results;
+
+        m_plan = plan;
+
+        m_mapper = mapper;
+
+        m_restore = restore;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (CURSOR_UNKNOWN == m_state)
+        {
+            m_state = fetch() ? CURSOR_ONROW : CURSOR_ENDED;
+        }
+        return (CURSOR_ONROW == m_state);
+    }
+
+    @Override
+    public JSONObject next()
+    {
+        if (false == hasNext())
+        {
+            throw new NoSuchElementException("GSQLCursor is exhausted");
+        }
+        m_state = CURSOR_UNKNOWN;
+
+        try
+        {
+            return m_plan.json(m_results, m_mapper);
+        }
+        catch (SQLException e)
+        {
+            close();
+
+            throw new IllegalStateException("GSQLCursor failed to map row " + m_rows, e);
+        }
+    }
+
+    public boolean advance()
+    {
+        // row view access, the getters below read the current row in place without building a JSONObject.
+
+        final boolean next = hasNext();
+
+        if (next)
+        {
+            m_state = CURSOR_UNKNOWN;
+        }
+        return next;
+    }
+
+    public int getColumnCount()
+    {
+        return m_plan.getColumnCount();
+    }
+
+    public String getColumnLabel(final int i)
+    {
+        return m_plan.getColumnLabel(i);
+    }
+
+    public Object getObject(final int i) throws SQLException
+    {
+        return m_plan.read(m_results, i);
+    }
+
+    public Object getObject(final String label) throws SQLException
+    {
+        return m_plan.read(m_results, m_results.findColumn(label));
+    }
+
+    public long getRowCount()
+    {
+        return m_rows;
+    }
+
+    public boolean isClosed()
+    {
+        return m_closed;
+    }
+
+    public Stream<JSONObject> stream()
+    {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                close();
+            }
+        });
+    }
+
+    private boolean fetch()
+    {
+        if (m_closed)
+        {
+            return false;
+        }
+        try
+        {
+            if (m_results.next())
+            {
+                m_rows++;
+
+                return true;
+            }
+        }
+        catch (SQLException e)
+        {
+            close();
+
+            throw new IllegalStateException("GSQLCursor failed to fetch row " + (m_rows + 1), e);
+        }
+        close();
+
+        return false;
+    }
+
+    @Override
+    public void close()
+    {
+        if (m_closed)
+        {
+            return;
+        }
+        m_closed = true;
+
+        m_state = CURSOR_ENDED;
+
+        m_gsql.closeCursor(m_connection, m_statement, m_results, m_restore);
+
+        m_gsql.mapped(m_sql, System.nanoTime() - m_opened, m_rows, -1L);
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLDataLoader
+{
+    public static final int                       DEFAULT_BATCH_SIZE = 100;
+
+    private final GSQL                            m_gsql;
+
+    private final String                          m_query;
+
+    private final List<Object>                    m_params;
+
+    private final String                          m_key;
+
+    private final int[]                           m_sizes;
+
+    private final String[]                        m_texts;
+
+    private final LinkedHashMap<Object, Deferred> m_queued           = new LinkedHashMap<Object, Deferred>();
+
+    private final HashMap<Object, Deferred>       m_loaded           = new HashMap<Object, Deferred>();
+
+    private String                                m_label;
+
+    private long                                  m_queries;
+
+    public GSQLDataLoader(final GSQL gsql, final String query, final String key)
+    {
+        this(gsql, query, new ArrayList<Object>(), key, DEFAULT_BATCH_SIZE);
+    }
+
+    public GSQLDataLoader(final GSQL gsql, final String query, final List<?> params, final String key, final int batch)
+    {
+        m_gsql = Objects.requireNonNull(gsql, "GSQL was null");
+
+        m_query = StringOps.requireTrimOrNull(query, "Loader query is null");
+
+        m_params = new ArrayList<Object>(Objects.requireNonNull(params, "Loader parameters were null"));
+
+        m_key = StringOps.requireTrimOrNull(key, "Loader key column is null");
+
+        m_sizes = sizes(Math.max(1, batch));
+
+        m_texts = new String[m_sizes.length];
+    }
+
+    public String getQuery()
+    {
+        return m_query;
+    }
+
+    public String getKey()
+    {
+        return m_key;
+    }
+
+    public int getBatchSize()
+    {
+        return m_sizes[m_sizes.length - 1];
+    }
+
+    public long getQueryCount()
+    {
+        return m_queries;
+    }
+
+    public int getQueuedCount()
+    {
+        return m_queued.size();
+    }
+
+    public Deferred load(final Object key)
+    {
+        final Object norm = normalize(Objects.requireNonNull(key, "Loader key was null"));
+
+        Deferred deferred = m_loaded.get(norm);
+
+        if (null == deferred)
+        {
+            deferred = m_queued.get(norm);
+
+            if (null == deferred)
+            {
+                deferred = new Deferred(norm);
+
+                m_queued.put(norm, deferred);
+            }
+        }
+        return deferred;
+    }
+
+    public List<JSONObject> loadMany(final Collection<?> keys) throws SQLException
+    {
+        final ArrayList<Deferred> list = new ArrayList<Deferred>();
+
+        for (Object key : Objects.requireNonNull(keys, "Loader keys were null"))
+        {
+            list.add(load(key));
+        }
+        dispatch();
+
+        final ArrayList<JSONObject> rows = new ArrayList<JSONObject>(list.size());
+
+        for (Deferred deferred : list)
+        {
+            rows.add(deferred.get());
+        }
+        return rows;
+    }
+
+    public int dispatch() throws SQLException
+    {
+        int count = 0;
+
+        final int most = getBatchSize();
+
+        while (false == m_queued.isEmpty())
+        {
+            final ArrayList<Deferred> batch = new ArrayList<Deferred>(Math.min(most, m_queued.size()));
+
+            for (Deferred deferred : m_queued.values())
+            {
+                batch.add(deferred);
+
+                if (batch.size() == most)
+                {
+                    break;
+                }
+            }
+            for (Deferred deferred : batch)
+            {
+                m_queued.remove(deferred.m_key);
+            }
+            try
+            {
+                run(batch);
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                // the keys are no longer queued, so every waiter must hear about the failure, a later load() asks again.
+
+                for (Deferred deferred : batch)
+                {
+                    deferred.m_failure = e;
+
+                    deferred.m_done = true;
+                }
+                throw e;
+            }
+
+            count++;
+        }
+        return count;
+    }
+
+    public void clear()
+    {
+        m_queued.clear();
+
+        m_loaded.clear();
+    }
+
+    protected void run(final List<Deferred> batch) throws SQLException
+    {
+        final int slot = slot(batch.size());
+
+        final int size = m_sizes[slot];
+
+        final ArrayList<Object> params = new ArrayList<Object>(m_params.size() + size);
+
+        params.addAll(m_params);
+
+        for (Deferred deferred : batch)
+        {
+            params.add(deferred.m_key);
+        }
+        // pad with the last key so only a handful of statement shapes are ever prepared.
+
+        final Object last = batch.get(batch.size() - 1).m_key;
+
+        for (int i = batch.size(); i < size; i++)
+        {
+            params.add(last);
+        }
+        final JSONArray rows = m_gsql.jarr(text(slot), params);
+
+        m_queries++;
+
+        final HashMap<Object, JSONObject> found = new HashMap<Object, JSONObject>(rows.size() * 2);
+
+        for (Object item : rows)
+        {
+            final JSONObject row = (JSONObject) item;
+
+            final Object norm = normalize(row.get(label(row)));
+
+            // the first row wins when the key is not unique.
+
+            if ((null != norm) && (false == found.containsKey(norm)))
+            {
+                found.put(norm, row);
+            }
+        }
+        for (Deferred deferred : batch)
+        {
+            deferred.m_value = found.get(deferred.m_key);
+
+            deferred.m_done = true;
+
+            m_loaded.put(deferred.m_key, deferred);
+        }
+    }
+
+    protected String text(final int slot)
+    {
+        String sql = m_texts[slot];
+
+        if (null == sql)
+        {
+            final StringBuilder buff = new StringBuilder("select * from (").append(m_query).append(") gsql_loader where ").append(m_key).append(" in (");
+
+            for (int i = 0; i < m_sizes[slot]; i++)
+            {
+                buff.append((i == 0) ? "?" : ", ?");
+            }
+            sql = m_texts[slot] = buff.append(')').toString();
+        }
+        return sql;
+    }
+
+    private String label(final JSONObject row)
+    {
+        if (null == m_label)
+        {
+            // drivers fold unquoted labels differently, match the key column the way the database spelled it.
+
+            for (String name : row.keySet())
+            {
+                if (name.equalsIgnoreCase(m_key))
+                {
+                    m_label = name;
+
+                    break;
+                }
+            }
+            if (null == m_label)
+            {
+                throw new IllegalArgumentException("Loader key column [" + m_key + "] is not in the results");
+            }
+        }
+        return m_label;
+    }
+
+    private int slot(final int count)
+    {
+        for (int i = 0; i < m_sizes.length; i++)
+        {
+            if (m_sizes[i] >= count)
+            {
+                return i;
+            }
+        }
+        return m_sizes.length - 1;
+    }
+
+    static final int[] sizes(final int batch)
+    {
+        final ArrayList<Integer> list = new ArrayList<Integer>();
+
+        for (int size = 1; size < batch; size <<= 1)
+        {
+            list.add(size);
+        }
+        list.add(batch);
+
+        final int[] sizes = new int[list.size()];
+
+        for (int i = 0; i < sizes.length; i++)
+        {
+            sizes[i] = list.get(i);
+        }
+        return sizes;
+    }
+
+    static final Object normalize(final Object key)
+    {
+        // the caller's Integer and the driver's Long must land on the same key.
+
+        if ((key instanceof Long) || (key instanceof Integer) || (key instanceof Short) || (key instanceof Byte))
+        {
+            return ((Number) key).longValue();
+        }
+        if (key instanceof BigInteger)
+        {
+            final BigInteger big = (BigInteger) key;
+
+            return (big.bitLength() < 64) ? (Object) big.longValue() : big;
+        }
+        if (key instanceof BigDecimal)
+        {
+            final BigDecimal big = ((BigDecimal) key).stripTrailingZeros();
+
+            if ((big.scale() <= 0) && (big.precision() - big.scale() < 19))
+            {
+                return big.longValue();
+            }
+            return big;
+        }
+        if (key instanceof CharSequence)
+        {
+            return key.toString();
+        }
+        return key;
+    }
+
+    public final class Deferred
+    {
+        private final Object m_key;
+
+        private JSONObject   m_value;
+
+        private Exception    m_failure;
+
+        private boolean      m_done;
+
+        private Deferred(final Object key)
+        {
+            m_key = key;
+        }
+
+        public Object getKey()
+        {
+            return m_key;
+        }
+
+        public boolean isDone()
+        {
+            return m_done;
+        }
+
+        public JSONObject get() throws SQLException
+        {
+            // the first read sends everything queued so far, that is where the N+1 calls collapse.
+
+            if (false == m_done)
+            {
+                dispatch();
+            }
+            if (m_failure instanceof SQLException)
+            {
+                throw (SQLException) m_failure;
+            }
+            if (null != m_failure)
+            {
+                throw (RuntimeException) m_failure;
+            }
+            return m_value;
+        }
+    }
+}
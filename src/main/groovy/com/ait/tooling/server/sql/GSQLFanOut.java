@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.ait.tooling.server.core.json.JSONArray;
+
+public class GSQLFanOut implements Closeable
+{
+    public static final int       DEFAULT_CONCURRENCY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final ExecutorService m_executor;
+
+    private final Semaphore       m_permits;
+
+    public static final GSQLFanOut getDefault()
+    {
+        return DefaultFanOutHolder.INSTANCE;
+    }
+
+    public GSQLFanOut(final int concurrency)
+    {
+        final int size = Math.max(1, concurrency);
+
+        m_permits = new Semaphore(size, true);
+
+        m_executor = executor(size);
+    }
+
+    private static final ExecutorService executor(final int size)
+    {
+        // virtual threads where the JVM has them, the permits keep database work bounded either way.
+
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Exception e)
+        {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new FanOutThreadFactory());
+
+            pool.allowCoreThreadTimeOut(true);
+
+            return pool;
+        }
+    }
+
+    public GSQLFanOutResult execute(final List<GSQLFanOutTask> tasks, final long timeout, final Function<String, GSQL> source)
+    {
+        Objects.requireNonNull(tasks, "GSQLFanOutTask list was null");
+
+        Objects.requireNonNull(source, "GSQL source was null");
+
+        final HashSet<String> keys = new HashSet<String>();
+
+        for (GSQLFanOutTask task : tasks)
+        {
+            if (false == keys.add(task.getKey()))
+            {
+                throw new IllegalArgumentException("Duplicate GSQLFanOutTask key [" + task.getKey() + "]");
+            }
+        }
+        final long time = System.nanoTime();
+
+        final long ends = (timeout > 0) ? time + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+
+        final ArrayList<Future<JSONArray>> futures = new ArrayList<Future<JSONArray>>(tasks.size());
+
+        for (final GSQLFanOutTask task : tasks)
+        {
+            futures.add(m_executor.submit(new Callable<JSONArray>()
+            {
+                @Override
+                public JSONArray call() throws Exception
+                {
+                    if (Long.MAX_VALUE == ends)
+                    {
+                        m_permits.acquire();
+                    }
+                    else if (false == m_permits.tryAcquire(Math.max(0L, ends - System.nanoTime()), TimeUnit.NANOSECONDS))
+                    {
+                        throw new SQLTimeoutException("timed out waiting for a fan out permit");
+                    }
+                    try
+                    {
+                        final GSQL gsql = source.apply(task.getName());
+
+                        if (null == gsql)
+                        {
+                            throw new SQLException("GSQLDescriptor [" + task.getName() + "] not found");
+                        }
+                        if (Long.MAX_VALUE == ends)
+                        {
+                            return gsql.jarr(task.getSQL(), task.getParams());
+                        }
+                        final long left = ends - System.nanoTime();
+
+                        if (left <= 0)
+                        {
+                            throw new SQLTimeoutException("timed out before the query started");
+                        }
+                        // the driver stops the query at the deadline, interrupting a JDBC thread does not.
+
+                        final int prev = gsql.getQueryTimeout();
+
+                        gsql.setQueryTimeout((int) Math.max(1L, (left + 999999999L) / 1000000000L));
+
+                        try
+                        {
+                            return gsql.jarr(task.getSQL(), task.getParams());
+                        }
+                        finally
+                        {
+                            gsql.setQueryTimeout(prev);
+                        }
+                    }
+                    finally
+                    {
+                        m_permits.release();
+                    }
+                }
+            }));
+        }
+        final GSQLFanOutResult result = new GSQLFanOutResult();
+
+        boolean interrupted = false;
+
+        for (int i = 0; i < futures.size(); i++)
+        {
+            final String key = tasks.get(i).getKey();
+
+            final Future<JSONArray> future = futures.get(i);
+
+            if (interrupted)
+            {
+                future.cancel(false);
+
+                result.addError(key, "interrupted");
+
+                continue;
+            }
+            try
+            {
+                if (Long.MAX_VALUE == ends)
+                {
+                    result.addResult(key, future.get());
+                }
+                else
+                {
+                    result.addResult(key, future.get(Math.max(0L, ends - System.nanoTime()), TimeUnit.NANOSECONDS));
+                }
+            }
+            catch (TimeoutException e)
+            {
+                // a task still queued never starts, one already running ends at its own query timeout.
+
+                future.cancel(false);
+
+                result.addError(key, "timed out after " + timeout + " ms");
+            }
+            catch (ExecutionException e)
+            {
+                final Throwable cause = (null == e.getCause()) ? e : e.getCause();
+
+                result.addError(key, (null == cause.getMessage()) ? cause.getClass().getName() : cause.getMessage());
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+
+                future.cancel(false);
+
+                result.addError(key, "interrupted");
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        result.setNanos(System.nanoTime() - time);
+
+        return result;
+    }
+
+    @Override
+    public void close()
+    {
+        m_executor.shutdown();
+    }
+
+    private static final class DefaultFanOutHolder
+    {
+        private static final GSQLFanOut INSTANCE = new GSQLFanOut(DEFAULT_CONCURRENCY);
+    }
+
+    private static final class FanOutThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger s_count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, "GSQLFanOut-" + s_count.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLFanOutResult
+{
+    private final LinkedHashMap<String, JSONArray> m_results = new LinkedHashMap<String, JSONArray>();
+
+    private final LinkedHashMap<String, String>    m_errors  = new LinkedHashMap<String, String>();
+
+    private long                                   m_nanos;
+
+    void addResult(final String key, final JSONArray rows)
+    {
+        m_results.put(key, rows);
+    }
+
+    void addError(final String key, final String error)
+    {
+        m_errors.put(key, error);
+    }
+
+    void setNanos(final long nanos)
+    {
+        m_nanos = nanos;
+    }
+
+    public boolean isComplete()
+    {
+        return m_errors.isEmpty();
+    }
+
+    public long getElapsedMillis()
+    {
+        return m_nanos / 1000000L;
+    }
+
+    public Map<String, JSONArray> getResults()
+    {
+        return Collections.unmodifiableMap(m_results);
+    }
+
+    public Map<String, String> getErrors()
+    {
+        return Collections.unmodifiableMap(m_errors);
+    }
+
+    public JSONArray concat()
+    {
+        final JSONArray list = new JSONArray();
+
+        for (JSONArray rows : m_results.values())
+        {
+            list.addAll(rows);
+        }
+        return list;
+    }
+
+    public JSONArray merged(final String field)
+    {
+        // concatenated rows, each tagged with the key of the task that produced it.
+
+        final JSONArray list = new JSONArray();
+
+        for (Map.Entry<String, JSONArray> entry : m_results.entrySet())
+        {
+            for (Object item : entry.getValue())
+            {
+                if (item instanceof JSONObject)
+                {
+                    // tag a copy, the rows kept for keyed() and concat() stay as the query returned them.
+
+                    final JSONObject row = new JSONObject((JSONObject) item);
+
+                    row.put(field, entry.getKey());
+
+                    list.add(row);
+                }
+                else
+                {
+                    list.add(item);
+                }
+            }
+        }
+        return list;
+    }
+
+    public JSONObject keyed()
+    {
+        final JSONObject json = new JSONObject();
+
+        for (Map.Entry<String, JSONArray> entry : m_results.entrySet())
+        {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json;
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("results", keyed());
+
+        if (false == m_errors.isEmpty())
+        {
+            final JSONObject errors = new JSONObject();
+
+            for (Map.Entry<String, String> entry : m_errors.entrySet())
+            {
+                errors.put(entry.getKey(), entry.getValue());
+            }
+            json.put("errors", errors);
+        }
+        json.put("millis", getElapsedMillis());
+
+        return json;
+    }
+}
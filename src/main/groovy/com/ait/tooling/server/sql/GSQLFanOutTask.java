@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+
+public final class GSQLFanOutTask
+{
+    private final String       m_name;
+
+    private final String       m_key;
+
+    private final String       m_sql;
+
+    private final List<Object> m_params;
+
+    public GSQLFanOutTask(final String name, final String sql)
+    {
+        this(name, name, sql, null);
+    }
+
+    public GSQLFanOutTask(final String name, final String sql, final List<?> params)
+    {
+        this(name, name, sql, params);
+    }
+
+    public GSQLFanOutTask(final String name, final String key, final String sql, final List<?> params)
+    {
+        m_name = StringOps.requireTrimOrNull(name, "GSQLDescriptor name is null");
+
+        m_key = StringOps.requireTrimOrNull(key, "GSQLFanOutTask key is null");
+
+        m_sql = Objects.requireNonNull(sql, "SQL was null");
+
+        m_params = (null == params) ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<Object>(params));
+    }
+
+    public String getName()
+    {
+        return m_name;
+    }
+
+    public String getKey()
+    {
+        return m_key;
+    }
+
+    public String getSQL()
+    {
+        return m_sql;
+    }
+
+    public List<Object> getParams()
+    {
+        return m_params;
+    }
+}
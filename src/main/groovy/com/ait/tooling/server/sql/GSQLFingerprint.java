@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.regex.Pattern;
+
+public final class GSQLFingerprint
+{
+    private static final Pattern                          IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final GSQLBoundedCache<String, String> s_cache = new GSQLBoundedCache<String, String>(1024);
+
+    private GSQLFingerprint()
+    {
+    }
+
+    public static final String fingerprint(final String sql)
+    {
+        if (null == sql)
+        {
+            return null;
+        }
+        String print = s_cache.get(sql);
+
+        if (null == print)
+        {
+            print = normalize(sql);
+
+            s_cache.put(sql, print);
+        }
+        return print;
+    }
+
+    static final String normalize(final String sql)
+    {
+        final int size = sql.length();
+
+        final StringBuilder buff = new StringBuilder(size);
+
+        boolean space = false;
+
+        for (int i = 0; i < size; i++)
+        {
+            final char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c))
+            {
+                space = buff.length() > 0;
+
+                continue;
+            }
+            if (space)
+            {
+                buff.append(' ');
+
+                space = false;
+            }
+            if (c == '\'')
+            {
+                // string literal, '' is an escaped quote inside it.
+
+                i++;
+
+                while (i < size)
+                {
+                    if (sql.charAt(i) == '\'')
+                    {
+                        if (((i + 1) < size) && (sql.charAt(i + 1) == '\''))
+                        {
+                            i++;
+                        }
+                        else
+                        {
+                            break;
+                        }
+                    }
+                    i++;
+                }
+                buff.append('?');
+            }
+            else if (c == '"')
+            {
+                final int stop = sql.indexOf('"', i + 1);
+
+                final int last = (stop < 0) ? size - 1 : stop;
+
+                buff.append(sql, i, last + 1);
+
+                i = last;
+            }
+            else if ((Character.isDigit(c)) && ((buff.length() == 0) || (false == Character.isJavaIdentifierPart(buff.charAt(buff.length() - 1)))))
+            {
+                while (((i + 1) < size) && ((Character.isDigit(sql.charAt(i + 1))) || (sql.charAt(i + 1) == '.')))
+                {
+                    i++;
+                }
+                buff.append('?');
+            }
+            else
+            {
+                buff.append(Character.toLowerCase(c));
+            }
+        }
+        return IN_LIST.matcher(buff).replaceAll("(?+)");
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GSQLInFlightCounter
+{
+    private final AtomicInteger m_count = new AtomicInteger();
+
+    private final AtomicLong    m_total = new AtomicLong();
+
+    public void acquired()
+    {
+        m_count.incrementAndGet();
+
+        m_total.incrementAndGet();
+    }
+
+    public void released()
+    {
+        if (m_count.decrementAndGet() <= 0)
+        {
+            synchronized (this)
+            {
+                notifyAll();
+            }
+        }
+    }
+
+    public int getCount()
+    {
+        return m_count.get();
+    }
+
+    public long getTotalCount()
+    {
+        return m_total.get();
+    }
+
+    public boolean awaitIdle(final long millis) throws InterruptedException
+    {
+        final long until = System.currentTimeMillis() + Math.max(0L, millis);
+
+        synchronized (this)
+        {
+            // released() notifies under this monitor, so a release between the check and the wait is not lost.
+
+            while (m_count.get() > 0)
+            {
+                final long wait = until - System.currentTimeMillis();
+
+                if (wait <= 0)
+                {
+                    return false;
+                }
+                wait(wait);
+            }
+        }
+        return true;
+    }
+}
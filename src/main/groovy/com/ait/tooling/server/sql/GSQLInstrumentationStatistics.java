@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLInstrumentationStatistics implements IGSQLInstrumentationHandler
+{
+    public static final int                                        DEFAULT_MAXIMUM_FINGERPRINTS = 512;
+
+    public static final String                                     OTHER_FINGERPRINTS           = "(other)";
+
+    private final int                                              m_maximum;
+
+    private final GSQLLatencyHistogram                             m_connect                    = new GSQLLatencyHistogram();
+
+    private final ConcurrentHashMap<String, FingerprintStatistics> m_printed                    = new ConcurrentHashMap<String, FingerprintStatistics>();
+
+    public GSQLInstrumentationStatistics()
+    {
+        this(DEFAULT_MAXIMUM_FINGERPRINTS);
+    }
+
+    public GSQLInstrumentationStatistics(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+    }
+
+    @Override
+    public void onConnectionAcquired(final String name, final long nanos)
+    {
+        m_connect.record(nanos);
+    }
+
+    @Override
+    public void onStatementExecuted(final String name, final String sql, final String fingerprint, final List<Object> params, final long nanos)
+    {
+        statistics(fingerprint).m_execute.record(nanos);
+    }
+
+    @Override
+    public void onResultsMapped(final String name, final String fingerprint, final long nanos, final long rows, final long bytes)
+    {
+        final FingerprintStatistics stats = statistics(fingerprint);
+
+        stats.m_mapping.record(nanos);
+
+        stats.m_results.addAndGet(rows);
+
+        if (bytes > 0)
+        {
+            stats.m_written.addAndGet(bytes);
+        }
+    }
+
+    public GSQLLatencyHistogram getConnectionHistogram()
+    {
+        return m_connect;
+    }
+
+    public GSQLLatencyHistogram getExecuteHistogram(final String fingerprint)
+    {
+        final FingerprintStatistics stats = m_printed.get(fingerprint);
+
+        if (null == stats)
+        {
+            return null;
+        }
+        return stats.m_execute;
+    }
+
+    public void reset()
+    {
+        m_connect.reset();
+
+        m_printed.clear();
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("connections", toJSONObject(m_connect));
+
+        final JSONObject prints = new JSONObject();
+
+        for (Map.Entry<String, FingerprintStatistics> entry : m_printed.entrySet())
+        {
+            final FingerprintStatistics stats = entry.getValue();
+
+            final JSONObject print = new JSONObject();
+
+            print.put("execute", toJSONObject(stats.m_execute));
+
+            print.put("mapping", toJSONObject(stats.m_mapping));
+
+            print.put("rows", stats.m_results.get());
+
+            print.put("bytes", stats.m_written.get());
+
+            prints.put(entry.getKey(), print);
+        }
+        json.put("statements", prints);
+
+        return json;
+    }
+
+    public static final JSONObject toJSONObject(final GSQLLatencyHistogram histogram)
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("count", histogram.getCount());
+
+        json.put("mean_us", histogram.getMean() / 1000.0);
+
+        json.put("p50_us", histogram.getPercentile(50) / 1000.0);
+
+        json.put("p95_us", histogram.getPercentile(95) / 1000.0);
+
+        json.put("p99_us", histogram.getPercentile(99) / 1000.0);
+
+        json.put("max_us", histogram.getMaximum() / 1000.0);
+
+        return json;
+    }
+
+    private FingerprintStatistics statistics(String fingerprint)
+    {
+        if (null == fingerprint)
+        {
+            fingerprint = OTHER_FINGERPRINTS;
+        }
+        FingerprintStatistics stats = m_printed.get(fingerprint);
+
+        if (null == stats)
+        {
+            // unbounded distinct SQL (literals in the text, generated IN lists) would otherwise grow this map forever.
+
+            if (m_printed.size() >= m_maximum)
+            {
+                fingerprint = OTHER_FINGERPRINTS;
+            }
+            stats = new FingerprintStatistics();
+
+            final FingerprintStatistics prev = m_printed.putIfAbsent(fingerprint, stats);
+
+            if (null != prev)
+            {
+                stats = prev;
+            }
+        }
+        return stats;
+    }
+
+    private static final class FingerprintStatistics
+    {
+        private final GSQLLatencyHistogram m_execute = new GSQLLatencyHistogram();
+
+        private final GSQLLatencyHistogram m_mapping = new GSQLLatencyHistogram();
+
+        private final AtomicLong           m_results = new AtomicLong();
+
+        private final AtomicLong           m_written = new AtomicLong();
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLKeysetPager
+{
+    public static final String  DEFAULT_LIMIT_CLAUSE = "limit ?";
+
+    private final String        m_query;
+
+    private final List<String>  m_keys;
+
+    private final List<Boolean> m_desc;
+
+    private final String        m_first;
+
+    private final String        m_after;
+
+    private final String        m_shape;
+
+    public GSQLKeysetPager(final String query, final List<String> keys)
+    {
+        this(query, keys, DEFAULT_LIMIT_CLAUSE);
+    }
+
+    public GSQLKeysetPager(final String query, final List<String> keys, final String limit)
+    {
+        m_query = StringOps.requireTrimOrNull(query, "Keyset query is null");
+
+        final ArrayList<String> list = new ArrayList<String>();
+
+        final ArrayList<Boolean> desc = new ArrayList<Boolean>();
+
+        for (String key : Objects.requireNonNull(keys, "Keyset columns were null"))
+        {
+            final String[] part = StringOps.requireTrimOrNull(key, "Keyset column is null").split("\\s+");
+
+            if ((part.length > 2) || ((part.length == 2) && (false == part[1].equalsIgnoreCase("asc")) && (false == part[1].equalsIgnoreCase("desc"))))
+            {
+                throw new IllegalArgumentException("Keyset column [" + key + "] must be a column name with an optional asc or desc");
+            }
+            list.add(part[0]);
+
+            desc.add((part.length == 2) && (part[1].equalsIgnoreCase("desc")));
+        }
+        if (list.isEmpty())
+        {
+            throw new IllegalArgumentException("Keyset columns were empty");
+        }
+        m_keys = Collections.unmodifiableList(list);
+
+        m_desc = Collections.unmodifiableList(desc);
+
+        final String tail = " order by " + order() + " " + StringOps.requireTrimOrNull(limit, "Keyset limit clause is null");
+
+        // both shapes have fixed text whatever the page or page size, so drivers and pools can keep them prepared.
+
+        m_first = "select * from (" + m_query + ") gsql_keyset" + tail;
+
+        m_after = "select * from (" + m_query + ") gsql_keyset where " + seek() + tail;
+
+        m_shape = Integer.toHexString((m_query + '\u0000' + m_keys + '\u0000' + m_desc).hashCode());
+    }
+
+    public String getQuery()
+    {
+        return m_query;
+    }
+
+    public List<String> getKeys()
+    {
+        return m_keys;
+    }
+
+    public String getFirstSQL()
+    {
+        return m_first;
+    }
+
+    public String getAfterSQL()
+    {
+        return m_after;
+    }
+
+    public JSONObject page(final GSQL gsql, final List<Object> params, final String token, final int size) throws SQLException
+    {
+        Objects.requireNonNull(gsql, "GSQL was null");
+
+        final int rows = Math.max(1, size);
+
+        final ArrayList<Object> binds = new ArrayList<Object>();
+
+        if (null != params)
+        {
+            binds.addAll(params);
+        }
+        final String sql;
+
+        final String from = StringOps.toTrimOrNull(token);
+
+        if (null == from)
+        {
+            sql = m_first;
+        }
+        else
+        {
+            final List<Object> last = decode(from);
+
+            // the expanded form (a > ?) or (a = ? and b > ?) works for mixed directions and on databases without row values.
+
+            for (int i = 0; i < m_keys.size(); i++)
+            {
+                for (int j = 0; j <= i; j++)
+                {
+                    binds.add(last.get(j));
+                }
+            }
+            sql = m_after;
+        }
+        binds.add(rows + 1);
+
+        final JSONArray list = new JSONArray();
+
+        String last = null;
+
+        final boolean more;
+
+        try (GSQLCursor cursor = gsql.cursor(sql, binds, 0))
+        {
+            while ((list.size() < rows) && (cursor.hasNext()))
+            {
+                list.add(cursor.next());
+
+                if (list.size() == rows)
+                {
+                    // the cursor still sits on the last row of the page, read its keys before looking ahead.
+
+                    last = encode(cursor);
+                }
+            }
+            more = cursor.hasNext();
+        }
+        final String next = more ? last : null;
+
+        final JSONObject json = new JSONObject();
+
+        json.put("rows", list);
+
+        json.put("size", list.size());
+
+        json.put("next", next);
+
+        return json;
+    }
+
+    private String order()
+    {
+        final StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < m_keys.size(); i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(m_keys.get(i)).append(m_desc.get(i) ? " desc" : " asc");
+        }
+        return builder.toString();
+    }
+
+    private String seek()
+    {
+        final StringBuilder builder = new StringBuilder("(");
+
+        for (int i = 0; i < m_keys.size(); i++)
+        {
+            if (i > 0)
+            {
+                builder.append(" or ");
+            }
+            builder.append('(');
+
+            for (int j = 0; j < i; j++)
+            {
+                builder.append(m_keys.get(j)).append(" = ? and ");
+            }
+            builder.append(m_keys.get(i)).append(m_desc.get(i) ? " < ?" : " > ?").append(')');
+        }
+        return builder.append(')').toString();
+    }
+
+    private String encode(final GSQLCursor cursor) throws SQLException
+    {
+        final StringBuilder builder = new StringBuilder(m_shape).append('|');
+
+        for (String key : m_keys)
+        {
+            final Object value = cursor.getObject(key);
+
+            final char type;
+
+            final String text;
+
+            if (null == value)
+            {
+                throw new IllegalStateException("Keyset column [" + key + "] is null");
+            }
+            else if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte))
+            {
+                type = 'L';
+
+                text = value.toString();
+            }
+            else if (value instanceof BigDecimal)
+            {
+                type = 'D';
+
+                text = ((BigDecimal) value).toString();
+            }
+            else if (value instanceof BigInteger)
+            {
+                type = 'G';
+
+                text = value.toString();
+            }
+            else if ((value instanceof Double) || (value instanceof Float))
+            {
+                type = 'F';
+
+                text = value.toString();
+            }
+            else if (value instanceof String)
+            {
+                type = 'S';
+
+                text = (String) value;
+            }
+            else if (value instanceof Timestamp)
+            {
+                type = 'T';
+
+                text = ((Timestamp) value).getTime() + "." + ((Timestamp) value).getNanos();
+            }
+            else if (value instanceof java.sql.Date)
+            {
+                type = 'A';
+
+                text = value.toString();
+            }
+            else if (value instanceof Time)
+            {
+                type = 'M';
+
+                text = value.toString();
+            }
+            else if (value instanceof Date)
+            {
+                type = 'U';
+
+                text = Long.toString(((Date) value).getTime());
+            }
+            else if (value instanceof Boolean)
+            {
+                type = 'B';
+
+                text = value.toString();
+            }
+            else if (value instanceof UUID)
+            {
+                type = 'X';
+
+                text = value.toString();
+            }
+            else
+            {
+                throw new IllegalStateException("Keyset column [" + key + "] type " + value.getClass().getName() + " is not supported");
+            }
+            builder.append(type).append(text.length()).append(':').append(text);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Object> decode(final String token)
+    {
+        final String text;
+
+        try
+        {
+            text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Keyset token is invalid", e);
+        }
+        final int bars = text.indexOf('|');
+
+        if ((bars < 0) || (false == m_shape.equals(text.substring(0, bars))))
+        {
+            throw new IllegalArgumentException("Keyset token does not belong to this query");
+        }
+        final ArrayList<Object> list = new ArrayList<Object>(m_keys.size());
+
+        try
+        {
+            int posn = bars + 1;
+
+            while (posn < text.length())
+            {
+                final char type = text.charAt(posn++);
+
+                final int cols = text.indexOf(':', posn);
+
+                final int size = Integer.parseInt(text.substring(posn, cols));
+
+                final String valu = text.substring(cols + 1, cols + 1 + size);
+
+                posn = cols + 1 + size;
+
+                list.add(value(type, valu));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new IllegalArgumentException("Keyset token is invalid", e);
+        }
+        if (list.size() != m_keys.size())
+        {
+            throw new IllegalArgumentException("Keyset token is invalid");
+        }
+        return list;
+    }
+
+    private static final Object value(final char type, final String valu)
+    {
+        switch (type)
+        {
+            case 'L':
+                return Long.valueOf(valu);
+            case 'D':
+                return new BigDecimal(valu);
+            case 'G':
+                return new BigInteger(valu);
+            case 'F':
+                return Double.valueOf(valu);
+            case 'S':
+                return valu;
+            case 'T':
+            {
+                final int dots = valu.indexOf('.');
+
+                final Timestamp time = new Timestamp(Long.parseLong(valu.substring(0, dots)));
+
+                time.setNanos(Integer.parseInt(valu.substring(dots + 1)));
+
+                return time;
+            }
+            case 'A':
+                return java.sql.Date.valueOf(valu);
+            case 'M':
+                return Time.valueOf(valu);
+            case 'U':
+                return new Date(Long.parseLong(valu));
+            case 'B':
+                return Boolean.valueOf(valu);
+            case 'X':
+                return UUID.fromString(valu);
+            default:
+                throw new IllegalArgumentException("Unknown keyset value type " + type);
+        }
+    }
+}
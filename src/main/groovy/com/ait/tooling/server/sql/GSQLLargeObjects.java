@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public final class GSQLLargeObjects
+{
+    public static final int BUFFER_SIZE = 8192;
+
+    private GSQLLargeObjects()
+    {
+    }
+
+    public static final boolean isLargeObjectType(final int type)
+    {
+        switch (type)
+        {
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static final boolean isBinaryType(final int type)
+    {
+        switch (type)
+        {
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static final void json(final ResultSet rset, final GSQLColumnPlan plan, final Writer out, final IGSQLRowObjectMapper mapper, final char[] buffer) throws SQLException, IOException
+    {
+        // everything but the large columns goes through the usual mapping, they are appended as they stream.
+
+        final JSONObject object = new JSONObject();
+
+        final int size = plan.getColumnCount();
+
+        for (int i = 1; i <= size; i++)
+        {
+            final String name = plan.getColumnLabel(i);
+
+            if ((null != name) && (false == plan.isLargeObject(i)))
+            {
+                if (null == mapper)
+                {
+                    object.put(name, plan.read(rset, i));
+                }
+                else
+                {
+                    mapper.mapObject(object, name, plan.read(rset, i));
+                }
+            }
+        }
+        final String head = object.toJSONString();
+
+        out.write(head, 0, head.length() - 1);
+
+        boolean first = (object.isEmpty());
+
+        for (int i = 1; i <= size; i++)
+        {
+            final String name = plan.getColumnLabel(i);
+
+            if ((null != name) && (plan.isLargeObject(i)))
+            {
+                if (false == first)
+                {
+                    out.write(',');
+                }
+                first = false;
+
+                quote(name, out);
+
+                out.write(':');
+
+                if (isBinaryType(plan.getColumnType(i)))
+                {
+                    base64(rset.getBinaryStream(i), out, buffer);
+                }
+                else
+                {
+                    text(rset.getCharacterStream(i), out, buffer);
+                }
+            }
+        }
+        out.write('}');
+    }
+
+    public static final void base64(final InputStream in, final Writer out, final char[] buffer) throws IOException
+    {
+        if (null == in)
+        {
+            out.write("null");
+
+            return;
+        }
+        out.write('"');
+
+        try (InputStream read = in)
+        {
+            final OutputStream base = Base64.getEncoder().wrap(new AsciiOutputStream(out));
+
+            final byte[] bytes = new byte[buffer.length];
+
+            int size;
+
+            while ((size = read.read(bytes)) >= 0)
+            {
+                base.write(bytes, 0, size);
+            }
+            // writes the final quantum and padding, the Writer itself stays open.
+
+            base.close();
+        }
+        out.write('"');
+    }
+
+    public static final void text(final Reader in, final Writer out, final char[] buffer) throws IOException
+    {
+        if (null == in)
+        {
+            out.write("null");
+
+            return;
+        }
+        out.write('"');
+
+        try (Reader read = in)
+        {
+            int size;
+
+            while ((size = read.read(buffer)) >= 0)
+            {
+                escape(buffer, size, out);
+            }
+        }
+        out.write('"');
+    }
+
+    public static final long copy(final ResultSet rset, final int i, final WritableByteChannel out) throws SQLException, IOException
+    {
+        final int type = rset.getMetaData().getColumnType(i);
+
+        if (isBinaryType(type))
+        {
+            final InputStream in = rset.getBinaryStream(i);
+
+            if (null == in)
+            {
+                return -1L;
+            }
+            long size = 0L;
+
+            try (InputStream read = in)
+            {
+                final byte[] bytes = new byte[BUFFER_SIZE];
+
+                int many;
+
+                while ((many = read.read(bytes)) >= 0)
+                {
+                    final ByteBuffer buff = ByteBuffer.wrap(bytes, 0, many);
+
+                    while (buff.hasRemaining())
+                    {
+                        out.write(buff);
+                    }
+                    size += many;
+                }
+            }
+            return size;
+        }
+        final Reader in = rset.getCharacterStream(i);
+
+        if (null == in)
+        {
+            return -1L;
+        }
+        long size = 0L;
+
+        try (Reader read = in)
+        {
+            // not closed, closing the Writer would close the caller's channel.
+
+            final Writer write = Channels.newWriter(out, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+
+            final char[] chars = new char[BUFFER_SIZE];
+
+            int many;
+
+            while ((many = read.read(chars)) >= 0)
+            {
+                write.write(chars, 0, many);
+
+                size += many;
+            }
+            write.flush();
+        }
+        return size;
+    }
+
+    static final void quote(final String text, final Writer out) throws IOException
+    {
+        out.write('"');
+
+        final char[] chars = text.toCharArray();
+
+        escape(chars, chars.length, out);
+
+        out.write('"');
+    }
+
+    private static final void escape(final char[] chars, final int size, final Writer out) throws IOException
+    {
+        int from = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            final char c = chars[i];
+
+            if ((c == '"') || (c == '\\') || (c < 0x20))
+            {
+                out.write(chars, from, i - from);
+
+                from = i + 1;
+
+                switch (c)
+                {
+                    case '"':
+                        out.write("\\\"");
+                        break;
+                    case '\\':
+                        out.write("\\\\");
+                        break;
+                    case '\n':
+                        out.write("\\n");
+                        break;
+                    case '\r':
+                        out.write("\\r");
+                        break;
+                    case '\t':
+                        out.write("\\t");
+                        break;
+                    default:
+                        out.write(String.format("\\u%04x", (int) c));
+                        break;
+                }
+            }
+        }
+        out.write(chars, from, size - from);
+    }
+
+    private static final class AsciiOutputStream extends OutputStream
+    {
+        private final Writer m_out;
+
+        private final char[] m_chars = new char[1024];
+
+        private AsciiOutputStream(final Writer out)
+        {
+            m_out = out;
+        }
+
+        @Override
+        public void write(final int b) throws IOException
+        {
+            m_out.write(b & 0xff);
+        }
+
+        @Override
+        public void write(final byte[] bytes, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                final int many = Math.min(len, m_chars.length);
+
+                for (int i = 0; i < many; i++)
+                {
+                    m_chars[i] = (char) (bytes[off + i] & 0xff);
+                }
+                m_out.write(m_chars, 0, many);
+
+                off += many;
+
+                len -= many;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            // the encoder closes us to flush its padding, the Writer belongs to the caller.
+        }
+    }
+}
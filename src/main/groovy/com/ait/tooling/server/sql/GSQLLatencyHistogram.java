@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class GSQLLatencyHistogram
+{
+    private static final int      SUB_BITS = 3;
+
+    private static final int      SUB_MASK = (1 << SUB_BITS) - 1;
+
+    private final AtomicLongArray m_counts = new AtomicLongArray(64 << SUB_BITS);
+
+    private final AtomicLong      m_number = new AtomicLong();
+
+    private final AtomicLong      m_totals = new AtomicLong();
+
+    private final AtomicLong      m_maxima = new AtomicLong();
+
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        m_counts.incrementAndGet(index(value));
+
+        m_number.incrementAndGet();
+
+        m_totals.addAndGet(value);
+
+        long prev = m_maxima.get();
+
+        while ((value > prev) && (false == m_maxima.compareAndSet(prev, value)))
+        {
+            prev = m_maxima.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return m_number.get();
+    }
+
+    public long getTotal()
+    {
+        return m_totals.get();
+    }
+
+    public long getMaximum()
+    {
+        return m_maxima.get();
+    }
+
+    public double getMean()
+    {
+        final long count = getCount();
+
+        if (count < 1)
+        {
+            return 0;
+        }
+        return ((double) getTotal()) / count;
+    }
+
+    public long getPercentile(final double percentile)
+    {
+        final long count = getCount();
+
+        if (count < 1)
+        {
+            return 0;
+        }
+        final long want = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) * count / 100.0));
+
+        long seen = 0;
+
+        for (int i = 0; i < m_counts.length(); i++)
+        {
+            seen += m_counts.get(i);
+
+            if (seen >= want)
+            {
+                // report the top of the bucket, the histogram is only exact to within 1/8th of a power of two.
+
+                return Math.min(lower(i + 1) - 1, getMaximum());
+            }
+        }
+        return getMaximum();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < m_counts.length(); i++)
+        {
+            m_counts.set(i, 0);
+        }
+        m_number.set(0);
+
+        m_totals.set(0);
+
+        m_maxima.set(0);
+    }
+
+    private static final int index(final long value)
+    {
+        if (value <= SUB_MASK)
+        {
+            return (int) value;
+        }
+        final int bits = 63 - Long.numberOfLeadingZeros(value);
+
+        return ((bits - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (bits - SUB_BITS)) & SUB_MASK);
+    }
+
+    private static final long lower(final int index)
+    {
+        if (index <= SUB_MASK)
+        {
+            return index;
+        }
+        final int bits = (index >>> SUB_BITS) + SUB_BITS - 1;
+
+        if (bits > 62)
+        {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bits) | (((long) (index & SUB_MASK)) << (bits - SUB_BITS));
+    }
+}
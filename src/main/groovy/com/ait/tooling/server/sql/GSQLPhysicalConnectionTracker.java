@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GSQLPhysicalConnectionTracker
+{
+    private final WeakHashMap<Connection, Map<IGSQLPhysicalConnectionHandler, Object>> m_connections = new WeakHashMap<Connection, Map<IGSQLPhysicalConnectionHandler, Object>>();
+
+    private final AtomicLong                                                            m_run_count   = new AtomicLong();
+
+    private final AtomicLong                                                            m_skip_count  = new AtomicLong();
+
+    public void preProcessConnection(final Connection connection, final IGSQLPhysicalConnectionHandler handler) throws SQLException
+    {
+        final Connection physical = physical(connection);
+
+        final Object state = handler.getPhysicalConnectionState();
+
+        final Map<IGSQLPhysicalConnectionHandler, Object> done;
+
+        synchronized (this)
+        {
+            done = m_connections.get(physical);
+
+            // a pool hands a physical connection to one thread at a time, so checking here and running below cannot race.
+
+            if ((null != done) && (done.containsKey(handler)) && (Objects.equals(done.get(handler), state)))
+            {
+                m_skip_count.incrementAndGet();
+
+                return;
+            }
+        }
+        handler.preProcessConnection(connection);
+
+        m_run_count.incrementAndGet();
+
+        synchronized (this)
+        {
+            Map<IGSQLPhysicalConnectionHandler, Object> save = m_connections.get(physical);
+
+            if (null == save)
+            {
+                save = new IdentityHashMap<IGSQLPhysicalConnectionHandler, Object>();
+
+                m_connections.put(physical, save);
+            }
+            save.put(handler, state);
+        }
+    }
+
+    public synchronized int getConnectionCount()
+    {
+        return m_connections.size();
+    }
+
+    public long getRunCount()
+    {
+        return m_run_count.get();
+    }
+
+    public long getSkipCount()
+    {
+        return m_skip_count.get();
+    }
+
+    public synchronized void reset()
+    {
+        m_connections.clear();
+    }
+
+    protected Connection physical(final Connection connection)
+    {
+        return unwrap(connection);
+    }
+
+    static final Connection unwrap(final Connection connection)
+    {
+        // pools and our own replica proxies hand out wrappers, unwrap reaches the driver connection they share.
+
+        try
+        {
+            final Connection physical = connection.unwrap(Connection.class);
+
+            if (null != physical)
+            {
+                return physical;
+            }
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            // not a wrapper, the connection is its own physical connection.
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLReplicaDataSource implements DataSource, Closeable
+{
+    public static final long           DEFAULT_EJECT_MILLIS = 30000L;
+
+    private final List<Replica>        m_replicas;
+
+    private final AtomicInteger        m_next_index         = new AtomicInteger();
+
+    private volatile GSQLReplicaPolicy m_policy;
+
+    private volatile long              m_eject_time         = DEFAULT_EJECT_MILLIS;
+
+    public GSQLReplicaDataSource(final List<DataSource> replicas)
+    {
+        this(replicas, GSQLReplicaPolicy.ROUND_ROBIN);
+    }
+
+    public GSQLReplicaDataSource(final List<DataSource> replicas, final GSQLReplicaPolicy policy)
+    {
+        final ArrayList<Replica> list = new ArrayList<Replica>();
+
+        for (DataSource source : Objects.requireNonNull(replicas, "Replica list was null"))
+        {
+            list.add(new Replica(Objects.requireNonNull(source, "Replica DataSource was null")));
+        }
+        if (list.isEmpty())
+        {
+            throw new IllegalArgumentException("Replica list was empty");
+        }
+        m_replicas = Collections.unmodifiableList(list);
+
+        m_policy = Objects.requireNonNull(policy, "GSQLReplicaPolicy was null");
+    }
+
+    public GSQLReplicaPolicy getPolicy()
+    {
+        return m_policy;
+    }
+
+    public void setPolicy(final GSQLReplicaPolicy policy)
+    {
+        m_policy = Objects.requireNonNull(policy, "GSQLReplicaPolicy was null");
+    }
+
+    public long getEjectMillis()
+    {
+        return m_eject_time;
+    }
+
+    public void setEjectMillis(final long millis)
+    {
+        m_eject_time = Math.max(0L, millis);
+    }
+
+    public int getReplicaCount()
+    {
+        return m_replicas.size();
+    }
+
+    public int getHealthyReplicaCount()
+    {
+        final long time = System.currentTimeMillis();
+
+        int count = 0;
+
+        for (Replica replica : m_replicas)
+        {
+            if (replica.isHealthy(time))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public List<DataSource> getReplicas()
+    {
+        final ArrayList<DataSource> list = new ArrayList<DataSource>(m_replicas.size());
+
+        for (Replica replica : m_replicas)
+        {
+            list.add(replica.m_source);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException
+    {
+        SQLException fail = null;
+
+        for (int i = 0; i < m_replicas.size(); i++)
+        {
+            final long time = System.currentTimeMillis();
+
+            final Replica replica = select(time);
+
+            if (null == replica)
+            {
+                break;
+            }
+            try
+            {
+                return replica.acquire(username, password);
+            }
+            catch (SQLException e)
+            {
+                // the replica sits out the eject period, the first call after that tries it again.
+
+                replica.eject(time + m_eject_time);
+
+                if (null == fail)
+                {
+                    fail = e;
+                }
+                else
+                {
+                    fail.addSuppressed(e);
+                }
+            }
+        }
+        if (null == fail)
+        {
+            throw new SQLException("No healthy replica DataSource available");
+        }
+        throw fail;
+    }
+
+    protected Replica select(final long time)
+    {
+        final int size = m_replicas.size();
+
+        final int frst = (m_next_index.getAndIncrement() & Integer.MAX_VALUE) % size;
+
+        switch (m_policy)
+        {
+            case LEAST_IN_FLIGHT:
+            {
+                Replica best = null;
+
+                for (int i = 0; i < size; i++)
+                {
+                    final Replica replica = m_replicas.get((frst + i) % size);
+
+                    if ((replica.isHealthy(time)) && ((null == best) || (replica.m_in_flight.get() < best.m_in_flight.get())))
+                    {
+                        best = replica;
+                    }
+                }
+                return best;
+            }
+            case LATENCY_WEIGHTED:
+            {
+                double total = 0;
+
+                final double[] weight = new double[size];
+
+                for (int i = 0; i < size; i++)
+                {
+                    final Replica replica = m_replicas.get(i);
+
+                    if (replica.isHealthy(time))
+                    {
+                        weight[i] = 1.0 / Math.max(1.0, replica.m_latency);
+
+                        total += weight[i];
+                    }
+                }
+                if (total <= 0)
+                {
+                    return null;
+                }
+                double pick = ThreadLocalRandom.current().nextDouble(total);
+
+                for (int i = 0; i < size; i++)
+                {
+                    if (weight[i] > 0)
+                    {
+                        pick -= weight[i];
+
+                        if (pick < 0)
+                        {
+                            return m_replicas.get(i);
+                        }
+                    }
+                }
+                for (int i = size - 1; i >= 0; i--)
+                {
+                    if (weight[i] > 0)
+                    {
+                        return m_replicas.get(i);
+                    }
+                }
+                return null;
+            }
+            default:
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    final Replica replica = m_replicas.get((frst + i) % size);
+
+                    if (replica.isHealthy(time))
+                    {
+                        return replica;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final long time = System.currentTimeMillis();
+
+        final JSONArray list = new JSONArray();
+
+        for (Replica replica : m_replicas)
+        {
+            final JSONObject json = new JSONObject();
+
+            json.put("healthy", replica.isHealthy(time));
+
+            json.put("in_flight", replica.m_in_flight.get());
+
+            json.put("acquired", replica.m_acquired.get());
+
+            json.put("failures", replica.m_failures.get());
+
+            json.put("latency_micros", (long) (replica.m_latency / 1000.0));
+
+            list.add(json);
+        }
+        final JSONObject json = new JSONObject();
+
+        json.put("policy", m_policy.name());
+
+        json.put("replicas", list);
+
+        return json;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException
+    {
+        return m_replicas.get(0).m_source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException
+    {
+        for (Replica replica : m_replicas)
+        {
+            replica.m_source.setLogWriter(out);
+        }
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException
+    {
+        return m_replicas.get(0).m_source.getLoginTimeout();
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException
+    {
+        for (Replica replica : m_replicas)
+        {
+            replica.m_source.setLoginTimeout(seconds);
+        }
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException
+    {
+        throw new SQLFeatureNotSupportedException("getParentLogger");
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> type) throws SQLException
+    {
+        if (type.isInstance(this))
+        {
+            return type.cast(this);
+        }
+        throw new SQLException("GSQLReplicaDataSource is not a wrapper for " + type.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> type) throws SQLException
+    {
+        return type.isInstance(this);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        IOException fail = null;
+
+        // every replica gets its close even when an earlier one fails.
+
+        for (Replica replica : m_replicas)
+        {
+            if (replica.m_source instanceof AutoCloseable)
+            {
+                try
+                {
+                    ((AutoCloseable) replica.m_source).close();
+                }
+                catch (Exception e)
+                {
+                    if (null == fail)
+                    {
+                        fail = new IOException("Error closing replica DataSource", e);
+                    }
+                    else
+                    {
+                        fail.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (null != fail)
+        {
+            throw fail;
+        }
+    }
+
+    protected static final class Replica
+    {
+        private final DataSource    m_source;
+
+        private final AtomicInteger m_in_flight = new AtomicInteger();
+
+        private final AtomicLong    m_acquired  = new AtomicLong();
+
+        private final AtomicLong    m_failures  = new AtomicLong();
+
+        private volatile long       m_ejected;
+
+        private volatile double     m_latency;
+
+        private Replica(final DataSource source)
+        {
+            m_source = source;
+        }
+
+        private boolean isHealthy(final long time)
+        {
+            return time >= m_ejected;
+        }
+
+        private void eject(final long until)
+        {
+            m_ejected = until;
+
+            m_failures.incrementAndGet();
+        }
+
+        private Connection acquire(final String username, final String password) throws SQLException
+        {
+            final long time = System.nanoTime();
+
+            final Connection connection = (null == username) ? m_source.getConnection() : m_source.getConnection(username, password);
+
+            m_acquired.incrementAndGet();
+
+            m_in_flight.incrementAndGet();
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new ReplicaConnection(this, connection, time));
+        }
+
+        private void release(final long nanos)
+        {
+            m_in_flight.decrementAndGet();
+
+            // exponentially weighted, recent checkouts count for a fifth.
+
+            final double last = m_latency;
+
+            m_latency = (last <= 0) ? nanos : ((last * 0.8) + (nanos * 0.2));
+        }
+    }
+
+    private static final class ReplicaConnection implements InvocationHandler
+    {
+        private final Replica       m_replica;
+
+        private final Connection    m_connection;
+
+        private final long          m_acquired;
+
+        private final AtomicBoolean m_released = new AtomicBoolean(false);
+
+        private ReplicaConnection(final Replica replica, final Connection connection, final long acquired)
+        {
+            m_replica = replica;
+
+            m_connection = connection;
+
+            m_acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+        {
+            final String name = method.getName();
+
+            if ("equals".equals(name))
+            {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name))
+            {
+                return System.identityHashCode(proxy);
+            }
+            if ("close".equals(name) && (m_released.compareAndSet(false, true)))
+            {
+                m_replica.release(System.nanoTime() - m_acquired);
+            }
+            try
+            {
+                return method.invoke(m_connection, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
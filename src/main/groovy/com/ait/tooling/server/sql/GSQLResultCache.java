@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLResultCache
+{
+    public static final long                       DEFAULT_TIME_TO_LIVE = 60000L;
+
+    private static final Pattern                   READ_TABLES          = Pattern.compile("\\b(?:from|join)\\s+([\\w.\"`\\[\\]]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern                   WRITE_TABLES         = Pattern.compile("^\\s*(?:insert\\s+into|update|delete\\s+from|truncate(?:\\s+table)?|merge\\s+into|replace\\s+into)\\s+([\\w.\"`\\[\\]]+)", Pattern.CASE_INSENSITIVE);
+
+    private final LinkedHashMap<ResultKey, Result> m_results            = new LinkedHashMap<ResultKey, Result>(64, 0.75f, true);
+
+    private final HashMap<String, Set<ResultKey>>  m_tagged             = new HashMap<String, Set<ResultKey>>();
+
+    private int                                    m_max_size;
+
+    private long                                   m_max_char;
+
+    private long                                   m_ttl_time;
+
+    private long                                   m_sum_char;
+
+    private long                                   m_hits;
+
+    private long                                   m_miss;
+
+    private long                                   m_evicted;
+
+    private long                                   m_expired;
+
+    private long                                   m_invalid;
+
+    private long                                   m_generation;
+
+    public GSQLResultCache(final int maximum)
+    {
+        this(maximum, DEFAULT_TIME_TO_LIVE, 0L);
+    }
+
+    public GSQLResultCache(final int maximum, final long ttl, final long chars)
+    {
+        m_max_size = Math.max(1, maximum);
+
+        m_ttl_time = Math.max(0L, ttl);
+
+        m_max_char = Math.max(0L, chars);
+    }
+
+    public static final boolean isCacheable(final String sql)
+    {
+        return GSQL.isReadQuery(sql);
+    }
+
+    public static final Set<String> getReadTables(final String sql)
+    {
+        return tables(READ_TABLES.matcher(sql));
+    }
+
+    public static final Set<String> getWriteTables(final String sql)
+    {
+        return tables(WRITE_TABLES.matcher(sql));
+    }
+
+    public JSONObject get(final String sql, final List<Object> params)
+    {
+        final ResultKey ikey = new ResultKey(sql, params);
+
+        synchronized (this)
+        {
+            final Result result = m_results.get(ikey);
+
+            if (null == result)
+            {
+                m_miss++;
+
+                return null;
+            }
+            if ((m_ttl_time > 0) && (System.currentTimeMillis() > result.m_expires))
+            {
+                remove(ikey);
+
+                m_expired++;
+
+                m_miss++;
+
+                return null;
+            }
+            m_hits++;
+
+            return copy(result.m_object);
+        }
+    }
+
+    public void put(final String sql, final List<Object> params, final JSONObject object)
+    {
+        put(sql, params, object, getGeneration());
+    }
+
+    public void put(final String sql, final List<Object> params, final JSONObject object, final long generation)
+    {
+        final ResultKey ikey = new ResultKey(sql, params);
+
+        final Set<String> tags = getReadTables(sql);
+
+        final long size = (m_max_char > 0) ? object.toJSONString().length() : 0L;
+
+        if ((m_max_char > 0) && (size > m_max_char))
+        {
+            return;
+        }
+        final Result result = new Result(copy(object), tags, size, System.currentTimeMillis() + m_ttl_time);
+
+        synchronized (this)
+        {
+            // a write invalidated something while this result was being read, it may already be stale.
+
+            if (generation != m_generation)
+            {
+                return;
+            }
+            remove(ikey);
+
+            m_results.put(ikey, result);
+
+            m_sum_char += size;
+
+            for (String tag : tags)
+            {
+                Set<ResultKey> keys = m_tagged.get(tag);
+
+                if (null == keys)
+                {
+                    keys = new HashSet<ResultKey>();
+
+                    m_tagged.put(tag, keys);
+                }
+                keys.add(ikey);
+            }
+            trim();
+        }
+    }
+
+    public int invalidate(final String sql)
+    {
+        int count = 0;
+
+        for (String tag : getWriteTables(sql))
+        {
+            count += invalidateTable(tag);
+        }
+        return count;
+    }
+
+    public synchronized int invalidateTable(final String table)
+    {
+        m_generation++;
+
+        final Set<ResultKey> keys = m_tagged.remove(tag(table));
+
+        if (null == keys)
+        {
+            return 0;
+        }
+        int count = 0;
+
+        for (ResultKey ikey : new ArrayList<ResultKey>(keys))
+        {
+            if (null != remove(ikey))
+            {
+                count++;
+            }
+        }
+        m_invalid += count;
+
+        return count;
+    }
+
+    public synchronized long getGeneration()
+    {
+        return m_generation;
+    }
+
+    public synchronized void clear()
+    {
+        m_generation++;
+
+        m_results.clear();
+
+        m_tagged.clear();
+
+        m_sum_char = 0;
+    }
+
+    public synchronized int size()
+    {
+        return m_results.size();
+    }
+
+    public synchronized long getCharacters()
+    {
+        return m_sum_char;
+    }
+
+    public synchronized long getHitCount()
+    {
+        return m_hits;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return m_miss;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return m_evicted;
+    }
+
+    public synchronized long getExpiredCount()
+    {
+        return m_expired;
+    }
+
+    public synchronized long getInvalidatedCount()
+    {
+        return m_invalid;
+    }
+
+    public synchronized int getMaximumSize()
+    {
+        return m_max_size;
+    }
+
+    public synchronized void setMaximumSize(final int maximum)
+    {
+        m_max_size = Math.max(1, maximum);
+
+        trim();
+    }
+
+    public synchronized long getMaximumCharacters()
+    {
+        return m_max_char;
+    }
+
+    public synchronized void setMaximumCharacters(final long chars)
+    {
+        // sizes are only measured while a character bound is set, so changing it starts from an empty cache.
+
+        m_max_char = Math.max(0L, chars);
+
+        clear();
+    }
+
+    public synchronized long getTimeToLive()
+    {
+        return m_ttl_time;
+    }
+
+    public synchronized void setTimeToLive(final long ttl)
+    {
+        m_ttl_time = Math.max(0L, ttl);
+    }
+
+    public synchronized JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("size", m_results.size());
+
+        json.put("chars", m_sum_char);
+
+        json.put("hits", m_hits);
+
+        json.put("misses", m_miss);
+
+        json.put("evictions", m_evicted);
+
+        json.put("expirations", m_expired);
+
+        json.put("invalidations", m_invalid);
+
+        return json;
+    }
+
+    private void trim()
+    {
+        final Iterator<ResultKey> iter = m_results.keySet().iterator();
+
+        while ((iter.hasNext()) && ((m_results.size() > m_max_size) || ((m_max_char > 0) && (m_sum_char > m_max_char))))
+        {
+            final ResultKey ikey = iter.next();
+
+            final Result result = m_results.get(ikey);
+
+            iter.remove();
+
+            untag(ikey, result);
+
+            m_evicted++;
+        }
+    }
+
+    private Result remove(final ResultKey ikey)
+    {
+        final Result result = m_results.remove(ikey);
+
+        if (null != result)
+        {
+            untag(ikey, result);
+        }
+        return result;
+    }
+
+    private void untag(final ResultKey ikey, final Result result)
+    {
+        m_sum_char -= result.m_length;
+
+        for (String tag : result.m_tags)
+        {
+            final Set<ResultKey> keys = m_tagged.get(tag);
+
+            if (null != keys)
+            {
+                keys.remove(ikey);
+
+                if (keys.isEmpty())
+                {
+                    m_tagged.remove(tag);
+                }
+            }
+        }
+    }
+
+    private static final Set<String> tables(final Matcher matcher)
+    {
+        final LinkedHashSet<String> tags = new LinkedHashSet<String>();
+
+        while (matcher.find())
+        {
+            final String tag = tag(matcher.group(1));
+
+            if (false == tag.isEmpty())
+            {
+                tags.add(tag);
+            }
+        }
+        return Collections.unmodifiableSet(tags);
+    }
+
+    private static final String tag(final String table)
+    {
+        // tag by the bare table name, schema qualifiers and identifier quotes vary between call sites.
+
+        String name = table.replace("\"", "").replace("`", "").replace("[", "").replace("]", "");
+
+        final int dots = name.lastIndexOf('.');
+
+        if (dots >= 0)
+        {
+            name = name.substring(dots + 1);
+        }
+        return name.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final JSONObject copy(final JSONObject object)
+    {
+        // cached results are handed out as copies, callers are free to change what they get back.
+
+        final JSONObject json = new JSONObject();
+
+        for (Map.Entry<String, Object> entry : object.entrySet())
+        {
+            json.put(entry.getKey(), copy(entry.getValue()));
+        }
+        return json;
+    }
+
+    private static final Object copy(final Object value)
+    {
+        if (value instanceof JSONObject)
+        {
+            return copy((JSONObject) value);
+        }
+        if (value instanceof JSONArray)
+        {
+            final JSONArray list = (JSONArray) value;
+
+            final JSONArray json = new JSONArray();
+
+            for (Object item : list)
+            {
+                json.add(copy(item));
+            }
+            return json;
+        }
+        return value;
+    }
+
+    private static final class ResultKey
+    {
+        private final String       m_sql;
+
+        private final List<Object> m_params;
+
+        private final int          m_hash;
+
+        private ResultKey(final String sql, final List<Object> params)
+        {
+            m_sql = sql;
+
+            m_params = ((null == params) || (params.isEmpty())) ? Collections.emptyList() : new ArrayList<Object>(params);
+
+            m_hash = (31 * m_sql.hashCode()) + m_params.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_hash;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (false == (other instanceof ResultKey))
+            {
+                return false;
+            }
+            final ResultKey that = (ResultKey) other;
+
+            return (m_hash == that.m_hash) && (m_sql.equals(that.m_sql)) && (m_params.equals(that.m_params));
+        }
+    }
+
+    private static final class Result
+    {
+        private final JSONObject  m_object;
+
+        private final Set<String> m_tags;
+
+        private final long        m_length;
+
+        private final long        m_expires;
+
+        private Result(final JSONObject object, final Set<String> tags, final long length, final long expires)
+        {
+            m_object = object;
+
+            m_tags = tags;
+
+            m_length = length;
+
+            m_expires = expires;
+        }
+    }
+}
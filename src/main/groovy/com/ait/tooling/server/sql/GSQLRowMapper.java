@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public final class GSQLRowMapper<T> implements IGSQLRowMapper<T>
+{
+    private static final MethodHandles.Lookup s_lookup  = MethodHandles.lookup();
+
+    private static final MethodType           MAKE_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T>                    m_type;
+
+    private final MethodHandle                m_make;
+
+    private final Column[]                    m_cols;
+
+    private final GSQLColumnPlan              m_plan;
+
+    public static final <T> GSQLRowMapper<T> compile(final Class<T> type, final GSQLColumnPlan plan) throws SQLException
+    {
+        Objects.requireNonNull(type, "Class was null");
+
+        Objects.requireNonNull(plan, "GSQLColumnPlan was null");
+
+        if (JSONObject.class == type)
+        {
+            // JSON already reads through the plan's primitive column readers.
+
+            return new GSQLRowMapper<T>(type, null, new Column[0], plan);
+        }
+        final MethodHandle make;
+
+        try
+        {
+            make = s_lookup.findConstructor(type, MethodType.methodType(void.class)).asType(MAKE_TYPE);
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new SQLException("No accessible no argument constructor for " + type.getName(), e);
+        }
+        final Map<String, MethodHandle> sets = setters(type);
+
+        final ArrayList<Column> cols = new ArrayList<Column>(plan.getColumnCount());
+
+        for (int i = 1; i <= plan.getColumnCount(); i++)
+        {
+            final String name = plan.getColumnLabel(i);
+
+            if (null != name)
+            {
+                final MethodHandle set = sets.get(normalize(name));
+
+                if (null != set)
+                {
+                    cols.add(column(i, set));
+                }
+            }
+        }
+        return new GSQLRowMapper<T>(type, make, cols.toArray(new Column[cols.size()]), plan);
+    }
+
+    private GSQLRowMapper(final Class<T> type, final MethodHandle make, final Column[] cols, final GSQLColumnPlan plan)
+    {
+        m_type = type;
+
+        m_make = make;
+
+        m_cols = cols;
+
+        m_plan = plan;
+    }
+
+    public Class<T> getType()
+    {
+        return m_type;
+    }
+
+    public int getMappedColumnCount()
+    {
+        return (null == m_make) ? m_plan.getColumnCount() : m_cols.length;
+    }
+
+    @Override
+    public T map(final ResultSet rset) throws SQLException
+    {
+        if (null == m_make)
+        {
+            return m_type.cast(m_plan.json(rset, null));
+        }
+        try
+        {
+            final Object target = (Object) m_make.invokeExact();
+
+            for (int i = 0; i < m_cols.length; i++)
+            {
+                m_cols[i].apply(target, rset);
+            }
+            return m_type.cast(target);
+        }
+        catch (SQLException | RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new SQLException("Error mapping row to " + m_type.getName(), e);
+        }
+    }
+
+    static final String normalize(final String name)
+    {
+        // FIRST_NAME, first_name and firstName all land on the same property.
+
+        final StringBuilder buff = new StringBuilder(name.length());
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            final char c = name.charAt(i);
+
+            if ('_' != c)
+            {
+                buff.append(c);
+            }
+        }
+        return buff.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Map<String, MethodHandle> setters(final Class<?> type) throws SQLException
+    {
+        final LinkedHashMap<String, MethodHandle> sets = new LinkedHashMap<String, MethodHandle>();
+
+        try
+        {
+            for (Method method : type.getMethods())
+            {
+                final String name = method.getName();
+
+                if ((name.length() > 3) && (name.startsWith("set")) && (1 == method.getParameterCount()) && (false == Modifier.isStatic(method.getModifiers())) && (false == method.isSynthetic()))
+                {
+                    final String prop = normalize(name.substring(3));
+
+                    if (false == sets.containsKey(prop))
+                    {
+                        sets.put(prop, s_lookup.unreflect(method));
+                    }
+                }
+            }
+            // fields without a public setter, walking up to the first declaring class.
+
+            for (Class<?> klass = type; ((null != klass) && (Object.class != klass)); klass = klass.getSuperclass())
+            {
+                for (Field field : klass.getDeclaredFields())
+                {
+                    final int mods = field.getModifiers();
+
+                    if ((false == Modifier.isStatic(mods)) && (false == Modifier.isFinal(mods)) && (false == field.isSynthetic()))
+                    {
+                        final String prop = normalize(field.getName());
+
+                        if (false == sets.containsKey(prop))
+                        {
+                            field.setAccessible(true);
+
+                            sets.put(prop, s_lookup.unreflectSetter(field));
+                        }
+                    }
+                }
+            }
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            throw new SQLException("Error compiling row mapper for " + type.getName(), e);
+        }
+        return sets;
+    }
+
+    private static final Column column(final int index, final MethodHandle set)
+    {
+        final Class<?> type = set.type().parameterType(1);
+
+        final MethodHandle nul = type.isPrimitive() ? null : set.asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+        if ((long.class == type) || (Long.class == type))
+        {
+            return new LongColumn(index, set.asType(MethodType.methodType(void.class, Object.class, long.class)), nul);
+        }
+        if ((int.class == type) || (Integer.class == type))
+        {
+            return new IntegerColumn(index, set.asType(MethodType.methodType(void.class, Object.class, int.class)), nul);
+        }
+        if ((double.class == type) || (Double.class == type))
+        {
+            return new DoubleColumn(index, set.asType(MethodType.methodType(void.class, Object.class, double.class)), nul);
+        }
+        if ((float.class == type) || (Float.class == type))
+        {
+            return new FloatColumn(index, set.asType(MethodType.methodType(void.class, Object.class, float.class)), nul);
+        }
+        if ((short.class == type) || (Short.class == type))
+        {
+            return new ShortColumn(index, set.asType(MethodType.methodType(void.class, Object.class, short.class)), nul);
+        }
+        if ((boolean.class == type) || (Boolean.class == type))
+        {
+            return new BooleanColumn(index, set.asType(MethodType.methodType(void.class, Object.class, boolean.class)), nul);
+        }
+        if (type.isPrimitive())
+        {
+            // byte and char, rare enough to go through getObject and unboxing.
+
+            return new ObjectColumn(index, set.asType(MethodType.methodType(void.class, Object.class, Object.class)), true);
+        }
+        if (String.class == type)
+        {
+            return new StringColumn(index, nul);
+        }
+        if (BigDecimal.class == type)
+        {
+            return new DecimalColumn(index, nul);
+        }
+        if (type.isAssignableFrom(Timestamp.class) && (Date.class.isAssignableFrom(type)))
+        {
+            return new TimestampColumn(index, nul);
+        }
+        return new ObjectColumn(index, nul, false);
+    }
+
+    private static abstract class Column
+    {
+        protected final int          m_index;
+
+        protected final MethodHandle m_set;
+
+        protected final MethodHandle m_nul;
+
+        protected Column(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            m_index = index;
+
+            m_set = set;
+
+            m_nul = nul;
+        }
+
+        protected final void nulled(final Object target) throws Throwable
+        {
+            // primitive targets keep their default.
+
+            if (null != m_nul)
+            {
+                m_nul.invokeExact(target, (Object) null);
+            }
+        }
+
+        abstract void apply(Object target, ResultSet rset) throws Throwable;
+    }
+
+    private static final class LongColumn extends Column
+    {
+        private LongColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final long valu = rset.getLong(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class IntegerColumn extends Column
+    {
+        private IntegerColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final int valu = rset.getInt(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class DoubleColumn extends Column
+    {
+        private DoubleColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final double valu = rset.getDouble(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class FloatColumn extends Column
+    {
+        private FloatColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final float valu = rset.getFloat(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class ShortColumn extends Column
+    {
+        private ShortColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final short valu = rset.getShort(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class BooleanColumn extends Column
+    {
+        private BooleanColumn(final int index, final MethodHandle set, final MethodHandle nul)
+        {
+            super(index, set, nul);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final boolean valu = rset.getBoolean(m_index);
+
+            if (rset.wasNull())
+            {
+                nulled(target);
+            }
+            else
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+
+    private static final class StringColumn extends Column
+    {
+        private StringColumn(final int index, final MethodHandle set)
+        {
+            super(index, set, set);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            m_set.invokeExact(target, (Object) rset.getString(m_index));
+        }
+    }
+
+    private static final class DecimalColumn extends Column
+    {
+        private DecimalColumn(final int index, final MethodHandle set)
+        {
+            super(index, set, set);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            m_set.invokeExact(target, (Object) rset.getBigDecimal(m_index));
+        }
+    }
+
+    private static final class TimestampColumn extends Column
+    {
+        private TimestampColumn(final int index, final MethodHandle set)
+        {
+            super(index, set, set);
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            m_set.invokeExact(target, (Object) rset.getTimestamp(m_index));
+        }
+    }
+
+    private static final class ObjectColumn extends Column
+    {
+        private final boolean m_primitive;
+
+        private ObjectColumn(final int index, final MethodHandle set, final boolean primitive)
+        {
+            super(index, set, set);
+
+            m_primitive = primitive;
+        }
+
+        @Override
+        void apply(final Object target, final ResultSet rset) throws Throwable
+        {
+            final Object valu = rset.getObject(m_index);
+
+            // a null into a primitive would throw, leave the default instead.
+
+            if ((null != valu) || (false == m_primitive))
+            {
+                m_set.invokeExact(target, valu);
+            }
+        }
+    }
+}
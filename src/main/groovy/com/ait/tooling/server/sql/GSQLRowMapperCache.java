@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class GSQLRowMapperCache extends GSQLBoundedCache<GSQLRowMapperCache.Shape, GSQLRowMapper<?>>
+{
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    public GSQLRowMapperCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public GSQLRowMapperCache(final int maximum)
+    {
+        super(maximum);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> GSQLRowMapper<T> mapper(final Class<T> type, final GSQLColumnPlan plan) throws SQLException
+    {
+        final Shape shape = new Shape(type, plan);
+
+        final GSQLRowMapper<?> mapper = get(shape);
+
+        if (null != mapper)
+        {
+            return (GSQLRowMapper<T>) mapper;
+        }
+        // compiling twice under a race is harmless, the last one in wins.
+
+        final GSQLRowMapper<T> make = GSQLRowMapper.compile(type, plan);
+
+        put(shape, make);
+
+        return make;
+    }
+
+    public static final class Shape
+    {
+        private final Class<?> m_type;
+
+        private final String[] m_labs;
+
+        private final int[]    m_cols;
+
+        private final int      m_hash;
+
+        private Shape(final Class<?> type, final GSQLColumnPlan plan)
+        {
+            final int size = plan.getColumnCount();
+
+            m_type = type;
+
+            m_labs = new String[size];
+
+            m_cols = new int[size];
+
+            for (int i = 0; i < size; i++)
+            {
+                m_labs[i] = plan.getColumnLabel(i + 1);
+
+                m_cols[i] = plan.getColumnType(i + 1);
+            }
+            m_hash = (31 * ((31 * type.hashCode()) + Arrays.hashCode(m_labs))) + Arrays.hashCode(m_cols);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_hash;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (false == (other instanceof Shape))
+            {
+                return false;
+            }
+            final Shape shape = (Shape) other;
+
+            return (m_type == shape.m_type) && (Arrays.equals(m_cols, shape.m_cols)) && (Arrays.equals(m_labs, shape.m_labs));
+        }
+    }
+}
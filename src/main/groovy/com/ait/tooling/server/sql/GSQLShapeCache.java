@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+import groovy.sql.ExpandedVariable;
+
+public class GSQLShapeCache
+{
+    public static final int                        DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final ConcurrentHashMap<Shape, String> m_shapes             = new ConcurrentHashMap<Shape, String>();
+
+    private final AtomicLong                       m_hit_count          = new AtomicLong();
+
+    private final AtomicLong                       m_miss_count         = new AtomicLong();
+
+    private final AtomicLong                       m_full_count         = new AtomicLong();
+
+    private volatile int                           m_maximum;
+
+    public GSQLShapeCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public GSQLShapeCache(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+    }
+
+    public static final boolean isPlain(final List<Object> values)
+    {
+        // nulls and expanded values change the text, everything else binds as a plain ?.
+
+        for (int i = 0; i < values.size(); i++)
+        {
+            final Object value = values.get(i);
+
+            if ((null == value) || (value instanceof ExpandedVariable))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String get(final String[] strings)
+    {
+        final String sql = m_shapes.get(new Shape(strings));
+
+        if (null == sql)
+        {
+            m_miss_count.incrementAndGet();
+        }
+        else
+        {
+            m_hit_count.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public void put(final String[] strings, final String sql)
+    {
+        // hot call sites show up first, once full new shapes are simply not remembered.
+
+        if (m_shapes.size() >= m_maximum)
+        {
+            m_full_count.incrementAndGet();
+
+            return;
+        }
+        m_shapes.putIfAbsent(new Shape(strings.clone()), sql);
+    }
+
+    public void clear()
+    {
+        m_shapes.clear();
+    }
+
+    public int size()
+    {
+        return m_shapes.size();
+    }
+
+    public int getMaximumSize()
+    {
+        return m_maximum;
+    }
+
+    public void setMaximumSize(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+    }
+
+    public long getHitCount()
+    {
+        return m_hit_count.get();
+    }
+
+    public long getMissCount()
+    {
+        return m_miss_count.get();
+    }
+
+    public long getFullCount()
+    {
+        return m_full_count.get();
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("size", size());
+
+        json.put("maximum", getMaximumSize());
+
+        json.put("hits", getHitCount());
+
+        json.put("misses", getMissCount());
+
+        json.put("full", getFullCount());
+
+        return json;
+    }
+
+    private static final class Shape
+    {
+        private final String[] m_strings;
+
+        private final int      m_hash;
+
+        private Shape(final String[] strings)
+        {
+            m_strings = strings;
+
+            // the literal parts of a GString call site are interned constants, identity is enough and skips hashing the text.
+
+            int hash = strings.length;
+
+            for (int i = 0; i < strings.length; i++)
+            {
+                hash = (31 * hash) + System.identityHashCode(strings[i]);
+            }
+            m_hash = hash;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_hash;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+            if (false == (other instanceof Shape))
+            {
+                return false;
+            }
+            final String[] strings = ((Shape) other).m_strings;
+
+            if (strings.length != m_strings.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < strings.length; i++)
+            {
+                if (strings[i] != m_strings[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,676 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.ait.tooling.server.core.json.JSONArray;
+import com.ait.tooling.server.core.json.JSONObject;
+
+import groovy.sql.GroovyRowResult;
+
+public class GSQLSlowQueryLog implements IGSQLInstrumentationHandler, Closeable
+{
+    public static final int                         DEFAULT_CAPACITY                = 100;
+
+    public static final long                        DEFAULT_THRESHOLD_MILLIS        = 1000L;
+
+    public static final double                      DEFAULT_DEVIATION_FACTOR        = 2.0;
+
+    public static final long                        DEFAULT_MINIMUM_SAMPLES         = 100L;
+
+    public static final long                        DEFAULT_WINDOW_MILLIS           = 60000L;
+
+    public static final long                        DEFAULT_EXPLAIN_INTERVAL_MILLIS = 1000L;
+
+    public static final long                        DEFAULT_EXPLAIN_REPEAT_MILLIS   = 60000L;
+
+    public static final String                      DEFAULT_EXPLAIN_PREFIX          = "EXPLAIN ";
+
+    private static final Logger                     LOG                             = Logger.getLogger(GSQLSlowQueryLog.class.getName());
+
+    private final AtomicReferenceArray<SlowQuery>   m_records;
+
+    private final AtomicLong                        m_written                       = new AtomicLong();
+
+    private final ThreadLocal<SlowQuery>            m_pending                       = new ThreadLocal<SlowQuery>();
+
+    private final ConcurrentHashMap<String, Window> m_windows                       = new ConcurrentHashMap<String, Window>();
+
+    private final GSQLBoundedCache<String, Long>    m_explained                     = new GSQLBoundedCache<String, Long>(256);
+
+    private final AtomicLong                        m_explain_last                  = new AtomicLong();
+
+    private volatile IGSQLInstrumentationHandler    m_delegate;
+
+    private volatile long                           m_threshold                     = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    private volatile double                         m_factor                        = DEFAULT_DEVIATION_FACTOR;
+
+    private volatile long                           m_samples                       = DEFAULT_MINIMUM_SAMPLES;
+
+    private volatile long                           m_window                        = DEFAULT_WINDOW_MILLIS;
+
+    private volatile DataSource                     m_explain_source;
+
+    private volatile String                         m_explain_prefix                = DEFAULT_EXPLAIN_PREFIX;
+
+    private volatile long                           m_explain_interval              = DEFAULT_EXPLAIN_INTERVAL_MILLIS;
+
+    private volatile long                           m_explain_repeat                = DEFAULT_EXPLAIN_REPEAT_MILLIS;
+
+    private ThreadPoolExecutor                      m_explain_executor;
+
+    public GSQLSlowQueryLog()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GSQLSlowQueryLog(final int capacity)
+    {
+        m_records = new AtomicReferenceArray<SlowQuery>(Math.max(1, capacity));
+    }
+
+    public void setDelegate(final IGSQLInstrumentationHandler delegate)
+    {
+        m_delegate = delegate;
+    }
+
+    public IGSQLInstrumentationHandler getDelegate()
+    {
+        return m_delegate;
+    }
+
+    @Override
+    public void onConnectionAcquired(final String name, final long nanos)
+    {
+        final IGSQLInstrumentationHandler delegate = m_delegate;
+
+        if (null != delegate)
+        {
+            delegate.onConnectionAcquired(name, nanos);
+        }
+    }
+
+    @Override
+    public void onStatementExecuted(final String name, final String sql, final String fingerprint, final List<Object> params, final long nanos)
+    {
+        final IGSQLInstrumentationHandler delegate = m_delegate;
+
+        if (null != delegate)
+        {
+            delegate.onStatementExecuted(name, sql, fingerprint, params, nanos);
+        }
+        m_pending.remove();
+
+        final long p99 = deviation(fingerprint, nanos);
+
+        final String reason;
+
+        if (nanos >= m_threshold)
+        {
+            reason = "threshold";
+        }
+        else if ((p99 > 0) && (nanos > (p99 * m_factor)))
+        {
+            reason = "p99";
+        }
+        else
+        {
+            return;
+        }
+        final SlowQuery slow = new SlowQuery(name, sql, fingerprint, types(params), nanos, p99, reason);
+
+        record(slow);
+
+        // the mapping callback for the same statement follows on this thread.
+
+        m_pending.set(slow);
+
+        explain(slow, params);
+    }
+
+    @Override
+    public void onResultsMapped(final String name, final String fingerprint, final long nanos, final long rows, final long bytes)
+    {
+        final IGSQLInstrumentationHandler delegate = m_delegate;
+
+        if (null != delegate)
+        {
+            delegate.onResultsMapped(name, fingerprint, nanos, rows, bytes);
+        }
+        final SlowQuery slow = m_pending.get();
+
+        if (null != slow)
+        {
+            m_pending.remove();
+
+            if ((null != fingerprint) && (fingerprint.equals(slow.m_fingerprint)))
+            {
+                slow.m_rows = rows;
+
+                slow.m_mapping = nanos;
+            }
+        }
+    }
+
+    public List<SlowQuery> getSlowQueries()
+    {
+        // newest first, a slot being overwritten concurrently simply shows its newer record.
+
+        final int size = m_records.length();
+
+        final long last = m_written.get();
+
+        final List<SlowQuery> list = new ArrayList<SlowQuery>();
+
+        for (long i = last - 1; (i >= 0) && (i >= (last - size)); i--)
+        {
+            final SlowQuery slow = m_records.get((int) (i % size));
+
+            if (null != slow)
+            {
+                list.add(slow);
+            }
+        }
+        return list;
+    }
+
+    public long getSlowQueryCount()
+    {
+        return m_written.get();
+    }
+
+    public int getCapacity()
+    {
+        return m_records.length();
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < m_records.length(); i++)
+        {
+            m_records.set(i, null);
+        }
+        m_windows.clear();
+
+        m_explained.clear();
+    }
+
+    public JSONArray toJSONArray()
+    {
+        final JSONArray list = new JSONArray();
+
+        for (SlowQuery slow : getSlowQueries())
+        {
+            list.add(slow.toJSONObject());
+        }
+        return list;
+    }
+
+    public long getThresholdMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(m_threshold);
+    }
+
+    public void setThresholdMillis(final long millis)
+    {
+        m_threshold = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, millis));
+    }
+
+    public double getDeviationFactor()
+    {
+        return m_factor;
+    }
+
+    public void setDeviationFactor(final double factor)
+    {
+        m_factor = factor;
+    }
+
+    public long getMinimumSamples()
+    {
+        return m_samples;
+    }
+
+    public void setMinimumSamples(final long samples)
+    {
+        m_samples = Math.max(1L, samples);
+    }
+
+    public long getWindowMillis()
+    {
+        return m_window;
+    }
+
+    public void setWindowMillis(final long millis)
+    {
+        m_window = Math.max(1L, millis);
+    }
+
+    public DataSource getExplainDataSource()
+    {
+        return m_explain_source;
+    }
+
+    public void setExplainDataSource(final DataSource source)
+    {
+        m_explain_source = source;
+    }
+
+    public String getExplainPrefix()
+    {
+        return m_explain_prefix;
+    }
+
+    public void setExplainPrefix(final String prefix)
+    {
+        m_explain_prefix = prefix;
+    }
+
+    public long getExplainIntervalMillis()
+    {
+        return m_explain_interval;
+    }
+
+    public void setExplainIntervalMillis(final long millis)
+    {
+        m_explain_interval = Math.max(0L, millis);
+    }
+
+    public long getExplainRepeatMillis()
+    {
+        return m_explain_repeat;
+    }
+
+    public void setExplainRepeatMillis(final long millis)
+    {
+        m_explain_repeat = Math.max(0L, millis);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (null != m_explain_executor)
+        {
+            m_explain_executor.shutdownNow();
+
+            m_explain_executor = null;
+        }
+    }
+
+    protected void record(final SlowQuery slow)
+    {
+        final long slot = m_written.getAndIncrement();
+
+        m_records.set((int) (slot % m_records.length()), slow);
+    }
+
+    protected long deviation(final String fingerprint, final long nanos)
+    {
+        if (null == fingerprint)
+        {
+            return 0L;
+        }
+        Window window = m_windows.get(fingerprint);
+
+        if (null == window)
+        {
+            // same bound as the statistics, generated SQL would otherwise grow this forever.
+
+            if (m_windows.size() >= GSQLInstrumentationStatistics.DEFAULT_MAXIMUM_FINGERPRINTS)
+            {
+                return 0L;
+            }
+            window = new Window(m_window);
+
+            final Window prev = m_windows.putIfAbsent(fingerprint, window);
+
+            if (null != prev)
+            {
+                window = prev;
+            }
+        }
+        return window.record(nanos, m_window, m_samples);
+    }
+
+    protected void explain(final SlowQuery slow, final List<Object> params)
+    {
+        final DataSource source = m_explain_source;
+
+        final String prefix = m_explain_prefix;
+
+        if ((null == source) || (null == prefix) || (false == GSQL.isReadQuery(slow.m_sql)))
+        {
+            return;
+        }
+        final long time = System.currentTimeMillis();
+
+        final long last = m_explain_last.get();
+
+        if (((time - last) < m_explain_interval) || (false == m_explain_last.compareAndSet(last, time)))
+        {
+            return;
+        }
+        final Long done = m_explained.get(slow.m_fingerprint);
+
+        if ((null != done) && ((time - done) < m_explain_repeat))
+        {
+            return;
+        }
+        m_explained.put(slow.m_fingerprint, time);
+
+        final List<Object> binds = (null == params) ? new ArrayList<Object>() : new ArrayList<Object>(params);
+
+        executor().execute(new ExplainTask(slow, source, prefix, binds));
+    }
+
+    private synchronized ThreadPoolExecutor executor()
+    {
+        if (null == m_explain_executor)
+        {
+            // one side thread and one waiting plan at most, anything beyond that is dropped.
+
+            m_explain_executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1), new ExplainThreadFactory(), new ThreadPoolExecutor.DiscardPolicy());
+
+            m_explain_executor.allowCoreThreadTimeOut(true);
+        }
+        return m_explain_executor;
+    }
+
+    private static final List<String> types(final List<Object> params)
+    {
+        final List<String> list = new ArrayList<String>();
+
+        if (null != params)
+        {
+            // types only, bind values can carry personal data.
+
+            for (Object param : params)
+            {
+                list.add((null == param) ? "null" : param.getClass().getSimpleName());
+            }
+        }
+        return list;
+    }
+
+    public static final class SlowQuery
+    {
+        private final long         m_time    = System.currentTimeMillis();
+
+        private final String       m_name;
+
+        private final String       m_sql;
+
+        private final String       m_fingerprint;
+
+        private final List<String> m_types;
+
+        private final long         m_nanos;
+
+        private final long         m_p99;
+
+        private final String       m_reason;
+
+        private volatile long      m_rows    = -1L;
+
+        private volatile long      m_mapping = -1L;
+
+        private volatile String    m_explain;
+
+        private SlowQuery(final String name, final String sql, final String fingerprint, final List<String> types, final long nanos, final long p99, final String reason)
+        {
+            m_name = name;
+
+            m_sql = sql;
+
+            m_fingerprint = fingerprint;
+
+            m_types = types;
+
+            m_nanos = nanos;
+
+            m_p99 = p99;
+
+            m_reason = reason;
+        }
+
+        public long getTime()
+        {
+            return m_time;
+        }
+
+        public String getName()
+        {
+            return m_name;
+        }
+
+        public String getSQL()
+        {
+            return m_sql;
+        }
+
+        public String getFingerprint()
+        {
+            return m_fingerprint;
+        }
+
+        public List<String> getParameterTypes()
+        {
+            return m_types;
+        }
+
+        public long getExecuteNanos()
+        {
+            return m_nanos;
+        }
+
+        public long getP99Nanos()
+        {
+            return m_p99;
+        }
+
+        public String getReason()
+        {
+            return m_reason;
+        }
+
+        public long getRowCount()
+        {
+            return m_rows;
+        }
+
+        public long getMappingNanos()
+        {
+            return m_mapping;
+        }
+
+        public String getExplain()
+        {
+            return m_explain;
+        }
+
+        public JSONObject toJSONObject()
+        {
+            final JSONObject json = new JSONObject();
+
+            json.put("time", m_time);
+
+            json.put("name", m_name);
+
+            json.put("fingerprint", m_fingerprint);
+
+            json.put("sql", m_sql);
+
+            final JSONArray types = new JSONArray();
+
+            types.addAll(m_types);
+
+            json.put("types", types);
+
+            json.put("execute_us", m_nanos / 1000.0);
+
+            json.put("p99_us", m_p99 / 1000.0);
+
+            json.put("reason", m_reason);
+
+            json.put("rows", m_rows);
+
+            json.put("mapping_us", (m_mapping < 0) ? -1.0 : (m_mapping / 1000.0));
+
+            if (null != m_explain)
+            {
+                json.put("explain", m_explain);
+            }
+            return json;
+        }
+    }
+
+    private static final class ExplainTask implements Runnable
+    {
+        private final SlowQuery    m_slow;
+
+        private final DataSource   m_source;
+
+        private final String       m_prefix;
+
+        private final List<Object> m_binds;
+
+        private ExplainTask(final SlowQuery slow, final DataSource source, final String prefix, final List<Object> binds)
+        {
+            m_slow = slow;
+
+            m_source = source;
+
+            m_prefix = prefix;
+
+            m_binds = binds;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // a plain GSQL on purpose, an instrumented one would report the EXPLAIN back into this log.
+
+                final StringBuilder plan = new StringBuilder();
+
+                for (GroovyRowResult row : new GSQL(m_source).rows(m_prefix + m_slow.m_sql, m_binds))
+                {
+                    if (plan.length() > 0)
+                    {
+                        plan.append('\n');
+                    }
+                    for (int i = 0; i < row.size(); i++)
+                    {
+                        if (i > 0)
+                        {
+                            plan.append(' ');
+                        }
+                        plan.append(row.getAt(i));
+                    }
+                }
+                m_slow.m_explain = plan.toString();
+            }
+            catch (Exception e)
+            {
+                m_slow.m_explain = "EXPLAIN failed: " + e.getMessage();
+
+                LOG.fine("Slow query EXPLAIN failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class ExplainThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, "GSQLSlowQueryExplain");
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+    private static final class Window
+    {
+        private volatile GSQLLatencyHistogram m_current = new GSQLLatencyHistogram();
+
+        private volatile GSQLLatencyHistogram m_previous;
+
+        private volatile long                 m_until;
+
+        private Window(final long millis)
+        {
+            m_until = System.currentTimeMillis() + millis;
+        }
+
+        private long record(final long nanos, final long millis, final long samples)
+        {
+            final long time = System.currentTimeMillis();
+
+            if (time >= m_until)
+            {
+                synchronized (this)
+                {
+                    if (time >= m_until)
+                    {
+                        m_previous = m_current;
+
+                        m_current = new GSQLLatencyHistogram();
+
+                        m_until = time + millis;
+                    }
+                }
+            }
+            // compare against the p99 seen before this call, a single outlier should not raise its own bar.
+
+            long p99 = 0L;
+
+            final GSQLLatencyHistogram current = m_current;
+
+            final GSQLLatencyHistogram previous = m_previous;
+
+            if (current.getCount() >= samples)
+            {
+                p99 = current.getPercentile(99);
+            }
+            else if ((null != previous) && (previous.getCount() >= samples))
+            {
+                p99 = previous.getPercentile(99);
+            }
+            current.record(nanos);
+
+            return p99;
+        }
+    }
+}
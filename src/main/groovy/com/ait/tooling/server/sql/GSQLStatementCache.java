@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.ait.tooling.server.core.json.JSONObject;
+
+public class GSQLStatementCache
+{
+    public static final int                               DEFAULT_MAXIMUM_SIZE = 64;
+
+    private static final Logger                           LOG                  = Logger.getLogger(GSQLStatementCache.class.getName());
+
+    private final IdentityHashMap<Connection, Statements> m_connections        = new IdentityHashMap<Connection, Statements>();
+
+    private final AtomicLong                              m_hit_count          = new AtomicLong();
+
+    private final AtomicLong                              m_miss_count         = new AtomicLong();
+
+    private final AtomicLong                              m_busy_count         = new AtomicLong();
+
+    private final AtomicLong                              m_evict_count        = new AtomicLong();
+
+    private volatile int                                  m_maximum;
+
+    public GSQLStatementCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public GSQLStatementCache(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+    }
+
+    public Connection physical(final Connection connection)
+    {
+        return GSQLPhysicalConnectionTracker.unwrap(connection);
+    }
+
+    public PreparedStatement borrow(final Connection physical, final String sql) throws SQLException
+    {
+        final Cached cached;
+
+        synchronized (this)
+        {
+            final Statements statements = m_connections.get(physical);
+
+            cached = (null == statements) ? null : statements.get(sql);
+
+            if (null == cached)
+            {
+                m_miss_count.incrementAndGet();
+
+                return null;
+            }
+            if (cached.m_busy)
+            {
+                // the same text is still open further up the stack, eachRow with a nested query for example.
+
+                m_busy_count.incrementAndGet();
+
+                return null;
+            }
+            cached.m_busy = true;
+        }
+        final PreparedStatement statement = cached.m_statement;
+
+        if (statement.isClosed())
+        {
+            synchronized (this)
+            {
+                final Statements statements = m_connections.get(physical);
+
+                if (null != statements)
+                {
+                    statements.m_owned.remove(statements.remove(sql).m_statement);
+                }
+            }
+            m_miss_count.incrementAndGet();
+
+            return null;
+        }
+        statement.clearParameters();
+
+        if (statement.getMaxRows() != 0)
+        {
+            statement.setMaxRows(0);
+        }
+        if (statement.getFetchSize() != 0)
+        {
+            statement.setFetchSize(0);
+        }
+        m_hit_count.incrementAndGet();
+
+        return statement;
+    }
+
+    public synchronized boolean offer(final Connection physical, final String sql, final PreparedStatement statement)
+    {
+        Statements statements = m_connections.get(physical);
+
+        if (null == statements)
+        {
+            purge();
+
+            statements = new Statements();
+
+            m_connections.put(physical, statements);
+        }
+        else if (statements.containsKey(sql))
+        {
+            // the cached one is busy, this statement stays private to its caller.
+
+            return false;
+        }
+        final Cached cached = new Cached(statement);
+
+        cached.m_busy = true;
+
+        statements.put(sql, cached);
+
+        statements.m_owned.put(statement, cached);
+
+        return true;
+    }
+
+    public boolean release(final Statement statement)
+    {
+        if ((null == statement) || (isEmpty()))
+        {
+            return false;
+        }
+        final Connection connection;
+
+        try
+        {
+            connection = statement.getConnection();
+        }
+        catch (SQLException e)
+        {
+            return false;
+        }
+        synchronized (this)
+        {
+            final Statements statements = m_connections.get(connection);
+
+            if (null == statements)
+            {
+                return false;
+            }
+            final Cached cached = statements.m_owned.get(statement);
+
+            if (null == cached)
+            {
+                return false;
+            }
+            cached.m_busy = false;
+
+            return true;
+        }
+    }
+
+    private synchronized boolean isEmpty()
+    {
+        return m_connections.isEmpty();
+    }
+
+    public synchronized void clear()
+    {
+        for (final Statements statements : m_connections.values())
+        {
+            for (final Cached cached : statements.values())
+            {
+                retire(cached);
+            }
+        }
+        m_connections.clear();
+    }
+
+    public synchronized int getConnectionCount()
+    {
+        return m_connections.size();
+    }
+
+    public synchronized int size()
+    {
+        int size = 0;
+
+        for (final Statements statements : m_connections.values())
+        {
+            size += statements.size();
+        }
+        return size;
+    }
+
+    public int getMaximumSize()
+    {
+        return m_maximum;
+    }
+
+    public void setMaximumSize(final int maximum)
+    {
+        m_maximum = Math.max(1, maximum);
+    }
+
+    public long getHitCount()
+    {
+        return m_hit_count.get();
+    }
+
+    public long getMissCount()
+    {
+        return m_miss_count.get();
+    }
+
+    public long getBusyCount()
+    {
+        return m_busy_count.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return m_evict_count.get();
+    }
+
+    public JSONObject toJSONObject()
+    {
+        final JSONObject json = new JSONObject();
+
+        json.put("connections", getConnectionCount());
+
+        json.put("statements", size());
+
+        json.put("maximum", getMaximumSize());
+
+        json.put("hits", getHitCount());
+
+        json.put("misses", getMissCount());
+
+        json.put("busy", getBusyCount());
+
+        json.put("evictions", getEvictionCount());
+
+        return json;
+    }
+
+    private void purge()
+    {
+        // pools retire physical connections, their statements went with them.
+
+        final Iterator<Map.Entry<Connection, Statements>> iter = m_connections.entrySet().iterator();
+
+        while (iter.hasNext())
+        {
+            final Map.Entry<Connection, Statements> entry = iter.next();
+
+            boolean closed;
+
+            try
+            {
+                closed = entry.getKey().isClosed();
+            }
+            catch (SQLException e)
+            {
+                closed = true;
+            }
+            if (closed)
+            {
+                iter.remove();
+            }
+        }
+    }
+
+    private void retire(final Cached cached)
+    {
+        m_evict_count.incrementAndGet();
+
+        if (cached.m_busy)
+        {
+            // still executing, release() no longer finds it so the caller closes it.
+
+            return;
+        }
+        try
+        {
+            cached.m_statement.close();
+        }
+        catch (SQLException e)
+        {
+            LOG.fine("Failed to close cached Statement: " + e.getMessage());
+        }
+    }
+
+    private static final class Cached
+    {
+        private final PreparedStatement m_statement;
+
+        private boolean                 m_busy;
+
+        private Cached(final PreparedStatement statement)
+        {
+            m_statement = statement;
+        }
+    }
+
+    private final class Statements extends LinkedHashMap<String, Cached>
+    {
+        private static final long                        serialVersionUID = 1L;
+
+        private final IdentityHashMap<Statement, Cached> m_owned          = new IdentityHashMap<Statement, Cached>();
+
+        private Statements()
+        {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Cached> eldest)
+        {
+            if (size() > m_maximum)
+            {
+                m_owned.remove(eldest.getValue().m_statement);
+
+                retire(eldest.getValue());
+
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GSQLStatementSetObjectDispatcher
+{
+    private static final IGSQLStatementSetObjectHandler[]                      NO_HANDLERS = new IGSQLStatementSetObjectHandler[0];
+
+    private final List<IGSQLStatementSetObjectHandler>                         m_handlers;
+
+    private final IGSQLStatementSetObjectHandler[]                             m_untyped;
+
+    private final ConcurrentHashMap<Class<?>, IGSQLStatementSetObjectHandler[]> m_dispatch  = new ConcurrentHashMap<Class<?>, IGSQLStatementSetObjectHandler[]>();
+
+    public GSQLStatementSetObjectDispatcher(final List<IGSQLStatementSetObjectHandler> list)
+    {
+        if ((null == list) || (list.isEmpty()))
+        {
+            m_handlers = Collections.emptyList();
+        }
+        else
+        {
+            m_handlers = Collections.unmodifiableList(new ArrayList<IGSQLStatementSetObjectHandler>(list));
+        }
+        final ArrayList<IGSQLStatementSetObjectHandler> untyped = new ArrayList<IGSQLStatementSetObjectHandler>();
+
+        for (IGSQLStatementSetObjectHandler handler : m_handlers)
+        {
+            if (null == classes(handler))
+            {
+                untyped.add(handler);
+            }
+        }
+        m_untyped = untyped.toArray(NO_HANDLERS);
+    }
+
+    public List<IGSQLStatementSetObjectHandler> getStatementSetObjectHandlers()
+    {
+        return m_handlers;
+    }
+
+    public boolean isEmpty()
+    {
+        return m_handlers.isEmpty();
+    }
+
+    public boolean setObject(final PreparedStatement statement, final int i, final Object value) throws SQLException
+    {
+        // a null value has no class to dispatch on, so only handlers that did not declare classes see it.
+
+        final IGSQLStatementSetObjectHandler[] chain = (null == value) ? m_untyped : dispatch(value.getClass());
+
+        for (int n = 0; n < chain.length; n++)
+        {
+            if (chain[n].setObject(statement, i, value))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected IGSQLStatementSetObjectHandler[] dispatch(final Class<?> type)
+    {
+        IGSQLStatementSetObjectHandler[] chain = m_dispatch.get(type);
+
+        if (null == chain)
+        {
+            final ArrayList<IGSQLStatementSetObjectHandler> list = new ArrayList<IGSQLStatementSetObjectHandler>();
+
+            for (IGSQLStatementSetObjectHandler handler : m_handlers)
+            {
+                final List<Class<?>> classes = classes(handler);
+
+                if (null == classes)
+                {
+                    list.add(handler);
+                }
+                else
+                {
+                    for (Class<?> claz : classes)
+                    {
+                        if ((null != claz) && (claz.isAssignableFrom(type)))
+                        {
+                            list.add(handler);
+
+                            break;
+                        }
+                    }
+                }
+            }
+            chain = list.toArray(NO_HANDLERS);
+
+            final IGSQLStatementSetObjectHandler[] prev = m_dispatch.putIfAbsent(type, chain);
+
+            if (null != prev)
+            {
+                chain = prev;
+            }
+        }
+        return chain;
+    }
+
+    private static final List<Class<?>> classes(final IGSQLStatementSetObjectHandler handler)
+    {
+        if (handler instanceof IGSQLTypedStatementSetObjectHandler)
+        {
+            return ((IGSQLTypedStatementSetObjectHandler) handler).getStatementSetObjectClasses();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql;
+
+import java.util.List;
+
+public interface IGSQLInstrumentationHandler
+{
+    public void onConnectionAcquired(String name, long nanos);
+
+    public void onStatementExecuted(String name, String sql, String fingerprint, List<Object> params, long nanos);
+
+    /**
+     * bytes is the UTF-8 size of the JSON that jsql and jstream produce, the copied size for large objects, or -1 when nothing was serialized.
+     */
+    public void onResultsMapped(String name, String fingerprint, long nanos, long rows, long bytes);
+}
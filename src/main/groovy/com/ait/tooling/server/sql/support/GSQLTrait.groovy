@@ -16,13 +16,26 @@
 
 package com.ait.tooling.server.sql.support
 
+import java.nio.channels.WritableByteChannel
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletableFuture
+import java.util.function.Function
+import java.util.stream.Stream
+
 import groovy.sql.GroovyRowResult
 import groovy.transform.CompileStatic
 import groovy.transform.Memoized
 
 import com.ait.tooling.server.core.json.JSONObject
 import com.ait.tooling.server.sql.GSQL
+import com.ait.tooling.server.sql.GSQLBatchResult
+import com.ait.tooling.server.sql.GSQLColumnarResult
+import com.ait.tooling.server.sql.GSQLDataLoader
+import com.ait.tooling.server.sql.GSQLFanOut
+import com.ait.tooling.server.sql.GSQLFanOutResult
+import com.ait.tooling.server.sql.GSQLFanOutTask
 import com.ait.tooling.server.sql.support.spring.GSQLContextInstance
+import com.ait.tooling.server.sql.support.spring.GSQLUnitOfWork
 import com.ait.tooling.server.sql.support.spring.IGSQLContext
 import com.ait.tooling.server.sql.support.spring.IGSQLDescriptor
 import com.ait.tooling.server.sql.support.spring.IGSQLProvider
@@ -42,16 +55,20 @@ public trait GSQLTrait
         getGSQLContext().getGSQLProvider()
     }
 
-    @Memoized
     public IGSQLDescriptor getSQLDescriptor(String name)
     {
-        getGSQLProvider().getSQLDescriptor(Objects.requireNonNull(name))
+        final GSQLUnitOfWork work = GSQLUnitOfWork.bound(Objects.requireNonNull(name))
+
+        if (work)
+        {
+            return work.getDescriptor()
+        }
+        getGSQLProvider().getSQLDescriptor(name)
     }
 
-    @Memoized
     public IGSQLDescriptor getSQLDescriptor()
     {
-        getGSQLProvider().getSQLDescriptor(getDefaultSQLDescriptorName())
+        getSQLDescriptor(getDefaultSQLDescriptorName())
     }
 
     @Memoized
@@ -62,64 +79,329 @@ public trait GSQLTrait
 
     public GSQL gsql(final String name)
     {
-        final IGSQLDescriptor desc = getSQLDescriptor(Objects.requireNonNull(name))
+        // inside a unit of work the thread keeps its pinned GSQL, whatever the provider holds by now.
+
+        final GSQLUnitOfWork work = GSQLUnitOfWork.bound(Objects.requireNonNull(name))
+
+        if (work)
+        {
+            return work.getGSQL()
+        }
+        final IGSQLDescriptor desc = getGSQLProvider().getSQLDescriptor(name)
 
         if (desc)
         {
-            return desc.make()
+            return desc.gsql()
         }
         null
     }
 
     public GSQL gsql()
     {
-        final IGSQLDescriptor desc = getSQLDescriptor()
-
-        if (desc)
-        {
-            return desc.make()
-        }
-        null
+        gsql(getDefaultSQLDescriptorName())
     }
 
     public JSONObject jsql(GString query)
     {
-        jrows(gsql().rows(Objects.requireNonNull(query)))
+        gsql().jsql(Objects.requireNonNull(query))
     }
 
     public JSONObject jsql(String name, GString query)
     {
-        jrows(gsql(Objects.requireNonNull(name)).rows(Objects.requireNonNull(query)))
+        gsql(Objects.requireNonNull(name)).jsql(Objects.requireNonNull(query))
     }
 
     public JSONObject jsql(String query)
     {
-        jrows(gsql().rows(Objects.requireNonNull(query)))
+        gsql().jsql(Objects.requireNonNull(query))
     }
 
     public JSONObject jsql(String name, String query)
     {
-        jrows(gsql(Objects.requireNonNull(name)).rows(Objects.requireNonNull(query)))
+        gsql(Objects.requireNonNull(name)).jsql(Objects.requireNonNull(query))
     }
 
     public JSONObject jsql(GString query, List<?> params)
     {
-        jrows(gsql().rows(Objects.requireNonNull(query), Objects.requireNonNull(params)))
+        gsql().jsql(Objects.requireNonNull(query), Objects.requireNonNull(params))
     }
 
     public JSONObject jsql(String name, GString query, List<?> params)
     {
-        jrows(gsql(Objects.requireNonNull(name)).rows(Objects.requireNonNull(query), Objects.requireNonNull(params)))
+        gsql(Objects.requireNonNull(name)).jsql(Objects.requireNonNull(query), Objects.requireNonNull(params))
     }
 
     public JSONObject jsql(String query, List<?> params)
     {
-        jrows(gsql().rows(Objects.requireNonNull(query), Objects.requireNonNull(params)))
+        gsql().jsql(Objects.requireNonNull(query), Objects.requireNonNull(params))
     }
 
     public JSONObject jsql(String name, String query, List<?> params)
     {
-        jrows(gsql(Objects.requireNonNull(name)).rows(Objects.requireNonNull(query), Objects.requireNonNull(params)))
+        gsql(Objects.requireNonNull(name)).jsql(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public CompletableFuture<JSONObject> jsqlAsync(String query)
+    {
+        jsqlAsync(Objects.requireNonNull(getSQLDescriptor(), "Default GSQLDescriptor not found"), query, [])
+    }
+
+    public CompletableFuture<JSONObject> jsqlAsync(String query, List<?> params)
+    {
+        jsqlAsync(Objects.requireNonNull(getSQLDescriptor(), "Default GSQLDescriptor not found"), query, params)
+    }
+
+    public CompletableFuture<JSONObject> jsqlAsync(String name, String query)
+    {
+        jsqlAsync(Objects.requireNonNull(getSQLDescriptor(Objects.requireNonNull(name)), "GSQLDescriptor not found"), query, [])
+    }
+
+    public CompletableFuture<JSONObject> jsqlAsync(String name, String query, List<?> params)
+    {
+        jsqlAsync(Objects.requireNonNull(getSQLDescriptor(Objects.requireNonNull(name)), "GSQLDescriptor not found"), query, params)
+    }
+
+    public CompletableFuture<JSONObject> jsqlAsync(IGSQLDescriptor desc, String query, List<?> params)
+    {
+        Objects.requireNonNull(query)
+
+        final List<Object> list = new ArrayList<Object>(Objects.requireNonNull(params))
+
+        desc.getAsyncExecutor().submit({ desc.gsql().jsql(query, list) } as Callable<JSONObject>)
+    }
+
+    public long jstream(Writer out, GString query)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(Writer out, String name, GString query)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(Writer out, String query)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(Writer out, String name, String query)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(Writer out, String query, List<?> params)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public long jstream(Writer out, String name, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public long jstream(OutputStream out, GString query)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(OutputStream out, String name, GString query)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(OutputStream out, String query)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(OutputStream out, String name, String query)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query))
+    }
+
+    public long jstream(OutputStream out, String query, List<?> params)
+    {
+        gsql().jstream(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public long jstream(OutputStream out, String name, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).jstream(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLBatchResult batch(String query, Iterable<?> params)
+    {
+        gsql().batch(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLBatchResult batch(String name, String query, Iterable<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLBatchResult batch(String name, String query, Iterable<?> params, int size)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params), size)
+    }
+
+    public GSQLBatchResult batch(String name, String query, Iterable<?> params, int size, int commit, boolean keys)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params), size, commit, keys)
+    }
+
+    public GSQLBatchResult batch(String query, Stream<?> params)
+    {
+        gsql().batch(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLBatchResult batch(String name, String query, Stream<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLBatchResult batch(String name, String query, Stream<?> params, int size)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params), size)
+    }
+
+    public GSQLBatchResult batch(String name, String query, Stream<?> params, int size, int commit, boolean keys)
+    {
+        gsql(Objects.requireNonNull(name)).batch(Objects.requireNonNull(query), Objects.requireNonNull(params), size, commit, keys)
+    }
+
+    public GSQLDataLoader loader(String query, String key)
+    {
+        new GSQLDataLoader(gsql(), Objects.requireNonNull(query), Objects.requireNonNull(key))
+    }
+
+    public GSQLDataLoader loader(String query, List<?> params, String key, int batch)
+    {
+        new GSQLDataLoader(gsql(), Objects.requireNonNull(query), Objects.requireNonNull(params), Objects.requireNonNull(key), batch)
+    }
+
+    public GSQLDataLoader loader(String name, String query, List<?> params, String key, int batch)
+    {
+        new GSQLDataLoader(gsql(Objects.requireNonNull(name)), Objects.requireNonNull(query), Objects.requireNonNull(params), Objects.requireNonNull(key), batch)
+    }
+
+    public long copyLargeObject(WritableByteChannel out, String query, List<?> params)
+    {
+        gsql().copyLargeObject(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public long copyLargeObject(WritableByteChannel out, String name, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).copyLargeObject(Objects.requireNonNull(out), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLColumnarResult columnar(String query)
+    {
+        gsql().columnar(Objects.requireNonNull(query))
+    }
+
+    public GSQLColumnarResult columnar(String query, List<?> params)
+    {
+        gsql().columnar(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public GSQLColumnarResult columnar(String name, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).columnar(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public <T> T unitOfWork(Closure<T> closure)
+    {
+        unitOfWork(getDefaultSQLDescriptorName(), false, false, closure)
+    }
+
+    public <T> T unitOfWork(boolean transact, Closure<T> closure)
+    {
+        unitOfWork(getDefaultSQLDescriptorName(), transact, false, closure)
+    }
+
+    public <T> T unitOfWork(boolean transact, boolean readonly, Closure<T> closure)
+    {
+        unitOfWork(getDefaultSQLDescriptorName(), transact, readonly, closure)
+    }
+
+    public <T> T unitOfWork(String name, boolean transact, boolean readonly, Closure<T> closure)
+    {
+        GSQLUnitOfWork.run(Objects.requireNonNull(name), getSQLDescriptor(name), transact, readonly, Objects.requireNonNull(closure))
+    }
+
+    public <T> List<T> list(Class<T> type, String query)
+    {
+        gsql().list(Objects.requireNonNull(type), Objects.requireNonNull(query))
+    }
+
+    public <T> List<T> list(Class<T> type, String query, List<?> params)
+    {
+        gsql().list(Objects.requireNonNull(type), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public <T> List<T> list(String name, Class<T> type, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).list(Objects.requireNonNull(type), Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public Stream<JSONObject> stream(String query)
+    {
+        gsql().stream(Objects.requireNonNull(query))
+    }
+
+    public Stream<JSONObject> stream(String query, List<?> params)
+    {
+        gsql().stream(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public Stream<JSONObject> stream(String name, String query, List<?> params)
+    {
+        gsql(Objects.requireNonNull(name)).stream(Objects.requireNonNull(query), Objects.requireNonNull(params))
+    }
+
+    public Stream<JSONObject> stream(String name, String query, List<?> params, int fetch)
+    {
+        gsql(Objects.requireNonNull(name)).stream(Objects.requireNonNull(query), Objects.requireNonNull(params), fetch)
+    }
+
+    public JSONObject page(String query, List<String> keys, String token, int size)
+    {
+        page(query, keys, [], token, size)
+    }
+
+    public JSONObject page(String query, List<String> keys, List<?> params, String token, int size)
+    {
+        page(Objects.requireNonNull(getSQLDescriptor(), "Default GSQLDescriptor not found"), query, keys, params, token, size)
+    }
+
+    public JSONObject page(String name, String query, List<String> keys, List<?> params, String token, int size)
+    {
+        page(Objects.requireNonNull(getSQLDescriptor(Objects.requireNonNull(name)), "GSQLDescriptor not found"), query, keys, params, token, size)
+    }
+
+    public JSONObject page(IGSQLDescriptor desc, String query, List<String> keys, List<?> params, String token, int size)
+    {
+        desc.pager(Objects.requireNonNull(query), Objects.requireNonNull(keys)).page(desc.gsql(), new ArrayList<Object>(Objects.requireNonNull(params)), token, size)
+    }
+
+    public GSQLFanOutResult fanout(List<GSQLFanOutTask> tasks, long timeout)
+    {
+        GSQLFanOut.getDefault().execute(Objects.requireNonNull(tasks), timeout, { String name -> gsql(name) } as Function<String, GSQL>)
+    }
+
+    public GSQLFanOutResult fanout(List<String> names, String query, List<?> params, long timeout)
+    {
+        Objects.requireNonNull(query)
+
+        Objects.requireNonNull(params)
+
+        fanout(Objects.requireNonNull(names).collect { String name -> new GSQLFanOutTask(name, query, params) }, timeout)
+    }
+
+    public GSQLFanOutResult fanout(List<String> names, String query, long timeout)
+    {
+        fanout(names, query, [], timeout)
     }
 
     public JSONObject jrows(List<GroovyRowResult> list)
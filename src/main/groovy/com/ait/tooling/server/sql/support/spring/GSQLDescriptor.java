@@ -17,17 +17,34 @@
 package com.ait.tooling.server.sql.support.spring;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.apache.log4j.Logger;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
 import com.ait.tooling.common.api.java.util.StringOps;
 import com.ait.tooling.common.api.types.Activatable;
 import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.GSQLAsyncExecutor;
+import com.ait.tooling.server.sql.GSQLBoundedCache;
+import com.ait.tooling.server.sql.GSQLCircuitBreaker;
+import com.ait.tooling.server.sql.GSQLColumnPlanCache;
+import com.ait.tooling.server.sql.GSQLConcurrencyLimiter;
+import com.ait.tooling.server.sql.GSQLInFlightCounter;
+import com.ait.tooling.server.sql.GSQLInstrumentationStatistics;
+import com.ait.tooling.server.sql.GSQLKeysetPager;
+import com.ait.tooling.server.sql.GSQLPhysicalConnectionTracker;
+import com.ait.tooling.server.sql.GSQLResultCache;
+import com.ait.tooling.server.sql.GSQLSlowQueryLog;
+import com.ait.tooling.server.sql.GSQLStatementCache;
+import com.ait.tooling.server.sql.GSQLStatementSetObjectDispatcher;
+import com.ait.tooling.server.sql.IGSQLInstrumentationHandler;
 import com.ait.tooling.server.sql.IGSQLPreProcessConnectionHandler;
 import com.ait.tooling.server.sql.IGSQLRowObjectMapper;
 import com.ait.tooling.server.sql.IGSQLStatementSetObjectHandler;
@@ -35,18 +52,72 @@ import com.ait.tooling.server.sql.IGSQLStatementSetObjectHandler;
 @ManagedResource
 public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
 {
+    public static final int                        DEFAULT_ASYNC_THREADS      = 8;
+
+    private static final Logger                    logger                     = Logger.getLogger(GSQLDescriptor.class);
+
+    public static final int                        DEFAULT_ASYNC_QUEUE_FACTOR = 16;
+
     private String                                 m_name;
 
     private final DataSource                       m_data_source;
 
     private List<IGSQLStatementSetObjectHandler>   m_setobj_list;
 
+    private GSQLStatementSetObjectDispatcher       m_setobj_dispatch = new GSQLStatementSetObjectDispatcher(null);
+
     private List<IGSQLPreProcessConnectionHandler> m_precon_list;
 
     private IGSQLRowObjectMapper                   m_row_object_mapper;
 
     private String                                 m_description = "Generic GSQLDescriptor";
 
+    private final GSQLColumnPlanCache              m_column_plans = new GSQLColumnPlanCache();
+
+    private final ThreadLocal<ThreadGSQL>          m_thread_gsql  = new ThreadLocal<ThreadGSQL>();
+
+    private final AtomicInteger                    m_config       = new AtomicInteger();
+
+    private boolean                                m_cache_pinned;
+
+    private IGSQLInstrumentationHandler            m_instrument   = new GSQLInstrumentationStatistics();
+
+    private GSQLResultCache                        m_result_cache;
+
+    private final GSQLBoundedCache<String, GSQLKeysetPager> m_pagers = new GSQLBoundedCache<String, GSQLKeysetPager>(256);
+
+    private String                                 m_keyset_limit = GSQLKeysetPager.DEFAULT_LIMIT_CLAUSE;
+
+    private final GSQLPhysicalConnectionTracker    m_physical     = new GSQLPhysicalConnectionTracker();
+
+    private GSQLStatementCache                     m_statements;
+
+    private GSQLSlowQueryLog                       m_slow_log;
+
+    private boolean                                m_stream_large;
+
+    private boolean                                m_measure_json = true;
+
+    private final GSQLInFlightCounter              m_in_flight    = new GSQLInFlightCounter();
+
+    private boolean                                m_close_source;
+
+    private GSQLConcurrencyLimiter                 m_limiter;
+
+    private GSQLCircuitBreaker                     m_breaker;
+
+    private int                                    m_warm_connections;
+
+    private List<String>                           m_warm_statements;
+
+    private GSQLAsyncExecutor                      m_async;
+
+    private int                                    m_async_threads;
+
+    private int                                    m_async_depth;
+
+    private boolean                                m_async_caller;
+
     public GSQLDescriptor(final DataSource datasource)
     {
         super(true);
@@ -64,12 +135,18 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
     public void setStatementObjectHandlers(final List<IGSQLStatementSetObjectHandler> list)
     {
         m_setobj_list = list;
+
+        m_setobj_dispatch = new GSQLStatementSetObjectDispatcher(list);
+
+        reset();
     }
 
     @Override
     public void setPreProcessConnectionHandlers(final List<IGSQLPreProcessConnectionHandler> list)
     {
         m_precon_list = list;
+
+        reset();
     }
 
     @Override
@@ -83,6 +160,8 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
     public final void setName(final String name)
     {
         m_name = StringOps.requireTrimOrNull(name, "GSQLDescriptor name is null");
+
+        reset();
     }
 
     @Override
@@ -94,17 +173,128 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
         }
         final GSQL gsql = new GSQL(getDataSource());
 
-        gsql.setStatementSetObjectHandlers(getStatementSetObjectHandlers());
+        configure(gsql);
+
+        return gsql;
+    }
+
+    protected void configure(final GSQL gsql)
+    {
+        gsql.setStatementSetObjectDispatcher(getStatementSetObjectDispatcher());
 
         gsql.setPreProcessConnectionHandlers(getPreProcessConnectionHandlers());
 
-        return gsql;
+        gsql.setRowObjectMapper(getRowObjectMapper());
+
+        gsql.setColumnPlanCache(getColumnPlanCache());
+
+        gsql.setCachePinnedStatements(isCachePinnedStatements());
+
+        gsql.setName(getName());
+
+        gsql.setInstrumentationHandler((null == m_slow_log) ? getInstrumentationHandler() : m_slow_log);
+
+        gsql.setResultCache(getResultCache());
+
+        gsql.setPhysicalConnectionTracker(getPhysicalConnectionTracker());
+
+        gsql.setStatementCache(getStatementCache());
+
+        gsql.setStreamLargeObjects(isStreamLargeObjects());
+
+        gsql.setMeasureJSON(isMeasureJSON());
+
+        gsql.setInFlightCounter(m_in_flight);
+
+        gsql.setConcurrencyLimiter(getConcurrencyLimiter());
+
+        gsql.setCircuitBreaker(getCircuitBreaker());
+    }
+
+    @Override
+    public GSQL gsql()
+    {
+        final int config = m_config.get();
+
+        final ThreadGSQL item = m_thread_gsql.get();
+
+        if (false == isActive())
+        {
+            // a retired descriptor still serves a thread that holds a pinned connection, the drain waits for it.
+
+            if ((null != item) && (null != item.m_gsql.getConnection()))
+            {
+                return item.m_gsql;
+            }
+            throw new IllegalArgumentException("GSQLDescriptor [" + getDescription() + "] is not active.");
+        }
+
+        if (null == item)
+        {
+            final GSQL gsql = make();
+
+            m_thread_gsql.set(new ThreadGSQL(gsql, config));
+
+            return gsql;
+        }
+        if (item.m_config != config)
+        {
+            // settings changed since this thread's GSQL was built, apply them in place so a pinned connection and its transaction survive.
+
+            configure(item.m_gsql);
+
+            item.m_config = config;
+        }
+        return item.m_gsql;
     }
 
     @Override
     public void close() throws IOException
     {
         setActive(false);
+
+        synchronized (this)
+        {
+            if (null != m_async)
+            {
+                m_async.close();
+            }
+        }
+        clearStatementCache();
+
+        if (null != m_slow_log)
+        {
+            m_slow_log.close();
+        }
+        final DataSource source = getDataSource();
+
+        // an injected DataSource belongs to whoever built it, close it here only when asked with setCloseDataSource(true).
+
+        if ((isCloseDataSource()) && (source instanceof AutoCloseable))
+        {
+            try
+            {
+                ((AutoCloseable) source).close();
+            }
+            catch (IOException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new IOException("Error closing DataSource", e);
+            }
+        }
+    }
+
+    public boolean isCloseDataSource()
+    {
+        return m_close_source;
+    }
+
+    public void setCloseDataSource(final boolean close)
+    {
+        m_close_source = close;
     }
 
     @Override
@@ -135,6 +325,747 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
     public void setRowObjectMapper(final IGSQLRowObjectMapper row_object_mapper)
     {
         m_row_object_mapper = row_object_mapper;
+
+        reset();
+    }
+
+    public void setCachePinnedStatements(final boolean cache)
+    {
+        m_cache_pinned = cache;
+
+        reset();
+    }
+
+    public boolean isCachePinnedStatements()
+    {
+        return m_cache_pinned;
+    }
+
+    @Override
+    public IGSQLInstrumentationHandler getInstrumentationHandler()
+    {
+        return m_instrument;
+    }
+
+    @Override
+    public void setInstrumentationHandler(final IGSQLInstrumentationHandler instrument)
+    {
+        m_instrument = instrument;
+
+        if (null != m_slow_log)
+        {
+            m_slow_log.setDelegate(instrument);
+        }
+        reset();
+    }
+
+    public GSQLSlowQueryLog getSlowQueryLog()
+    {
+        return m_slow_log;
+    }
+
+    public void setSlowQueryLog(final GSQLSlowQueryLog slow)
+    {
+        if (null != slow)
+        {
+            slow.setDelegate(getInstrumentationHandler());
+        }
+        m_slow_log = slow;
+
+        reset();
+    }
+
+    protected GSQLSlowQueryLog slowQueryLog()
+    {
+        // any slow query property switches the log on.
+
+        if (null == m_slow_log)
+        {
+            setSlowQueryLog(new GSQLSlowQueryLog());
+        }
+        return m_slow_log;
+    }
+
+    public void setSlowQueryCapacity(final int capacity)
+    {
+        final GSQLSlowQueryLog slow = new GSQLSlowQueryLog(capacity);
+
+        final GSQLSlowQueryLog prev = m_slow_log;
+
+        if (null != prev)
+        {
+            slow.setThresholdMillis(prev.getThresholdMillis());
+
+            slow.setDeviationFactor(prev.getDeviationFactor());
+
+            slow.setMinimumSamples(prev.getMinimumSamples());
+
+            slow.setWindowMillis(prev.getWindowMillis());
+
+            slow.setExplainDataSource(prev.getExplainDataSource());
+
+            slow.setExplainPrefix(prev.getExplainPrefix());
+
+            slow.setExplainIntervalMillis(prev.getExplainIntervalMillis());
+
+            slow.setExplainRepeatMillis(prev.getExplainRepeatMillis());
+
+            prev.close();
+        }
+        setSlowQueryLog(slow);
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor slow query threshold in milliseconds.")
+    public void setSlowQueryThresholdMillis(final long millis)
+    {
+        slowQueryLog().setThresholdMillis(millis);
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor slow query factor over the rolling p99 of the same statement.")
+    public void setSlowQueryDeviationFactor(final double factor)
+    {
+        slowQueryLog().setDeviationFactor(factor);
+    }
+
+    public void setSlowQueryMinimumSamples(final long samples)
+    {
+        slowQueryLog().setMinimumSamples(samples);
+    }
+
+    public void setSlowQueryWindowMillis(final long millis)
+    {
+        slowQueryLog().setWindowMillis(millis);
+    }
+
+    @ManagedOperation(description = "Enable or disable EXPLAIN capture for GSQLDescriptor slow queries.")
+    public void setSlowQueryExplain(final boolean explain)
+    {
+        slowQueryLog().setExplainDataSource(explain ? getDataSource() : null);
+    }
+
+    public void setSlowQueryExplainPrefix(final String prefix)
+    {
+        slowQueryLog().setExplainPrefix(prefix);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor slow query count since start.")
+    public long getSlowQueryCount()
+    {
+        final GSQLSlowQueryLog slow = getSlowQueryLog();
+
+        if (null == slow)
+        {
+            return 0L;
+        }
+        return slow.getSlowQueryCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor recent slow queries as JSON, newest first.")
+    public String getSlowQueries()
+    {
+        final GSQLSlowQueryLog slow = getSlowQueryLog();
+
+        if (null == slow)
+        {
+            return "[]";
+        }
+        return slow.toJSONArray().toJSONString();
+    }
+
+    @ManagedOperation(description = "Clear GSQLDescriptor recent slow queries.")
+    public void clearSlowQueries()
+    {
+        final GSQLSlowQueryLog slow = getSlowQueryLog();
+
+        if (null != slow)
+        {
+            slow.clear();
+        }
+    }
+
+    public GSQLConcurrencyLimiter getConcurrencyLimiter()
+    {
+        return m_limiter;
+    }
+
+    public void setConcurrencyLimiter(final GSQLConcurrencyLimiter limiter)
+    {
+        m_limiter = limiter;
+
+        reset();
+    }
+
+    protected synchronized GSQLConcurrencyLimiter concurrencyLimiter()
+    {
+        // any concurrency limit property switches the limiter on.
+
+        if (null == m_limiter)
+        {
+            setConcurrencyLimiter(new GSQLConcurrencyLimiter());
+        }
+        return m_limiter;
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor current concurrency limit.")
+    public void setConcurrencyLimit(final int limit)
+    {
+        concurrencyLimiter().setLimit(limit);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor current concurrency limit, -1 when not limited.")
+    public int getConcurrencyLimit()
+    {
+        final GSQLConcurrencyLimiter limiter = getConcurrencyLimiter();
+
+        if (null == limiter)
+        {
+            return -1;
+        }
+        return limiter.getLimit();
+    }
+
+    public void setConcurrencyLimitMinimum(final int minimum)
+    {
+        concurrencyLimiter().setMinimumLimit(minimum);
+    }
+
+    public void setConcurrencyLimitMaximum(final int maximum)
+    {
+        concurrencyLimiter().setMaximumLimit(maximum);
+    }
+
+    public void setConcurrencyLimitBackoffRatio(final double backoff)
+    {
+        concurrencyLimiter().setBackoffRatio(backoff);
+    }
+
+    public void setConcurrencyLimitTimeoutMillis(final long millis)
+    {
+        concurrencyLimiter().setTimeoutMillis(millis);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of queries admitted by the concurrency limit and not yet finished.")
+    public int getConcurrencyInFlight()
+    {
+        final GSQLConcurrencyLimiter limiter = getConcurrencyLimiter();
+
+        if (null == limiter)
+        {
+            return 0;
+        }
+        return limiter.getInFlight();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor concurrency limit statistics as JSON.")
+    public String getConcurrencyLimitStatistics()
+    {
+        final GSQLConcurrencyLimiter limiter = getConcurrencyLimiter();
+
+        if (null == limiter)
+        {
+            return "{}";
+        }
+        return limiter.toJSONObject().toJSONString();
+    }
+
+    public GSQLCircuitBreaker getCircuitBreaker()
+    {
+        return m_breaker;
+    }
+
+    public void setCircuitBreaker(final GSQLCircuitBreaker breaker)
+    {
+        m_breaker = breaker;
+
+        reset();
+    }
+
+    protected synchronized GSQLCircuitBreaker circuitBreaker()
+    {
+        if (null == m_breaker)
+        {
+            setCircuitBreaker(new GSQLCircuitBreaker());
+        }
+        return m_breaker;
+    }
+
+    public void setCircuitBreakerFailureThreshold(final int threshold)
+    {
+        circuitBreaker().setFailureThreshold(threshold);
+    }
+
+    public void setCircuitBreakerOpenMillis(final long millis)
+    {
+        circuitBreaker().setOpenMillis(millis);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor circuit breaker state, CLOSED, OPEN, HALF_OPEN or NONE.")
+    public String getCircuitBreakerState()
+    {
+        final GSQLCircuitBreaker breaker = getCircuitBreaker();
+
+        if (null == breaker)
+        {
+            return "NONE";
+        }
+        return breaker.getState().name();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor circuit breaker statistics as JSON.")
+    public String getCircuitBreakerStatistics()
+    {
+        final GSQLCircuitBreaker breaker = getCircuitBreaker();
+
+        if (null == breaker)
+        {
+            return "{}";
+        }
+        return breaker.toJSONObject().toJSONString();
+    }
+
+    @ManagedOperation(description = "Close GSQLDescriptor circuit breaker.")
+    public void resetCircuitBreaker()
+    {
+        final GSQLCircuitBreaker breaker = getCircuitBreaker();
+
+        if (null != breaker)
+        {
+            breaker.reset();
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor connection, execute and mapping statistics as JSON.")
+    public String getInstrumentationStatistics()
+    {
+        final IGSQLInstrumentationHandler instrument = getInstrumentationHandler();
+
+        if (instrument instanceof GSQLInstrumentationStatistics)
+        {
+            return ((GSQLInstrumentationStatistics) instrument).toJSONObject().toJSONString();
+        }
+        return "{}";
+    }
+
+    @ManagedOperation(description = "Reset GSQLDescriptor connection, execute and mapping statistics.")
+    public void resetInstrumentationStatistics()
+    {
+        final IGSQLInstrumentationHandler instrument = getInstrumentationHandler();
+
+        if (instrument instanceof GSQLInstrumentationStatistics)
+        {
+            ((GSQLInstrumentationStatistics) instrument).reset();
+        }
+    }
+
+    @Override
+    public GSQLResultCache getResultCache()
+    {
+        return m_result_cache;
+    }
+
+    public void setResultCache(final GSQLResultCache cache)
+    {
+        m_result_cache = cache;
+
+        reset();
+    }
+
+    public void setResultCacheSize(final int size)
+    {
+        if (size < 1)
+        {
+            setResultCache(null);
+        }
+        else if (null == m_result_cache)
+        {
+            setResultCache(new GSQLResultCache(size));
+        }
+        else
+        {
+            m_result_cache.setMaximumSize(size);
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor result cache statistics as JSON.")
+    public String getResultCacheStatistics()
+    {
+        final GSQLResultCache cache = getResultCache();
+
+        if (null == cache)
+        {
+            return "{}";
+        }
+        return cache.toJSONObject().toJSONString();
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor result cache time to live in milliseconds.")
+    public void setResultCacheTimeToLive(final long ttl)
+    {
+        final GSQLResultCache cache = getResultCache();
+
+        if (null != cache)
+        {
+            cache.setTimeToLive(ttl);
+        }
+    }
+
+    @ManagedOperation(description = "Invalidate GSQLDescriptor cached results that read a table.")
+    public int invalidateResultCacheTable(final String table)
+    {
+        final GSQLResultCache cache = getResultCache();
+
+        if ((null == cache) || (null == table))
+        {
+            return 0;
+        }
+        return cache.invalidateTable(table);
+    }
+
+    @ManagedOperation(description = "Clear GSQLDescriptor result cache.")
+    public void clearResultCache()
+    {
+        final GSQLResultCache cache = getResultCache();
+
+        if (null != cache)
+        {
+            cache.clear();
+        }
+    }
+
+    public GSQLPhysicalConnectionTracker getPhysicalConnectionTracker()
+    {
+        return m_physical;
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of physical connections with session setup applied.")
+    public int getPhysicalConnectionCount()
+    {
+        return m_physical.getConnectionCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of physical connection handler runs.")
+    public long getPhysicalConnectionRunCount()
+    {
+        return m_physical.getRunCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of physical connection handler runs skipped.")
+    public long getPhysicalConnectionSkipCount()
+    {
+        return m_physical.getSkipCount();
+    }
+
+    @ManagedOperation(description = "Run physical connection handlers again on the next checkout of every connection.")
+    public void resetPhysicalConnections()
+    {
+        m_physical.reset();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of connections in use by queries.")
+    public int getInFlightCount()
+    {
+        return m_in_flight.getCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor count of connections used since start.")
+    public long getInFlightTotalCount()
+    {
+        return m_in_flight.getTotalCount();
+    }
+
+    @Override
+    @ManagedOperation(description = "Refuse new GSQLDescriptor work, wait up to the timeout in milliseconds for queries in flight, then close.")
+    public boolean drain(final long millis) throws IOException
+    {
+        setActive(false);
+
+        boolean idle;
+
+        try
+        {
+            idle = m_in_flight.awaitIdle(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            idle = false;
+        }
+        close();
+
+        return idle;
+    }
+
+    public void setWarmUpConnections(final int count)
+    {
+        m_warm_connections = Math.max(0, count);
+    }
+
+    public int getWarmUpConnections()
+    {
+        return m_warm_connections;
+    }
+
+    public void setWarmUpStatements(final List<String> list)
+    {
+        m_warm_statements = list;
+    }
+
+    public List<String> getWarmUpStatements()
+    {
+        return m_warm_statements;
+    }
+
+    @Override
+    @ManagedOperation(description = "Open GSQLDescriptor warm up connections and prepare its warm up statements, returns connections opened.")
+    public int warmUp() throws SQLException
+    {
+        final List<String> list = getWarmUpStatements();
+
+        boolean prepare = ((null != list) && (false == list.isEmpty()));
+
+        if ((prepare) && (null == getStatementCache()))
+        {
+            // a statement prepared and closed again leaves nothing behind, only the cache keeps it.
+
+            logger.warn("GSQLDescriptor [" + getName() + "] has no statement cache, warm up statements skipped");
+
+            prepare = false;
+        }
+        final int count = Math.max(m_warm_connections, prepare ? 1 : 0);
+
+        if (count < 1)
+        {
+            return 0;
+        }
+        return make().warmUp(count, prepare ? list : null);
+    }
+
+    public void setMeasureJSON(final boolean measure)
+    {
+        m_measure_json = measure;
+
+        reset();
+    }
+
+    public boolean isMeasureJSON()
+    {
+        return m_measure_json;
+    }
+
+    public void setStreamLargeObjects(final boolean stream)
+    {
+        m_stream_large = stream;
+
+        reset();
+    }
+
+    public boolean isStreamLargeObjects()
+    {
+        return m_stream_large;
+    }
+
+    public GSQLStatementCache getStatementCache()
+    {
+        return m_statements;
+    }
+
+    public void setStatementCache(final GSQLStatementCache cache)
+    {
+        m_statements = cache;
+
+        reset();
+    }
+
+    public void setStatementCacheSize(final int size)
+    {
+        if (size < 1)
+        {
+            setStatementCache(null);
+        }
+        else if (null == m_statements)
+        {
+            setStatementCache(new GSQLStatementCache(size));
+        }
+        else
+        {
+            m_statements.setMaximumSize(size);
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor prepared statement cache statistics as JSON.")
+    public String getStatementCacheStatistics()
+    {
+        final GSQLStatementCache cache = getStatementCache();
+
+        if (null == cache)
+        {
+            return "{}";
+        }
+        return cache.toJSONObject().toJSONString();
+    }
+
+    @ManagedOperation(description = "Close and clear GSQLDescriptor cached prepared statements.")
+    public void clearStatementCache()
+    {
+        final GSQLStatementCache cache = getStatementCache();
+
+        if (null != cache)
+        {
+            cache.clear();
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQL GString shape cache statistics as JSON.")
+    public String getShapeCacheStatistics()
+    {
+        return GSQL.getShapeCache().toJSONObject().toJSONString();
+    }
+
+    @Override
+    public synchronized GSQLAsyncExecutor getAsyncExecutor()
+    {
+        if (null == m_async)
+        {
+            final int threads = (m_async_threads > 0) ? m_async_threads : getDefaultAsyncThreadCount();
+
+            final int depth = (m_async_depth > 0) ? m_async_depth : threads * DEFAULT_ASYNC_QUEUE_FACTOR;
+
+            m_async = new GSQLAsyncExecutor(getName(), threads, depth, m_async_caller);
+        }
+        return m_async;
+    }
+
+    protected int getDefaultAsyncThreadCount()
+    {
+        return DEFAULT_ASYNC_THREADS;
+    }
+
+    public synchronized void setAsyncThreadCount(final int threads)
+    {
+        m_async_threads = threads;
+
+        resetAsyncExecutor();
+    }
+
+    public synchronized void setAsyncQueueDepth(final int depth)
+    {
+        m_async_depth = depth;
+
+        resetAsyncExecutor();
+    }
+
+    public synchronized void setAsyncCallerRuns(final boolean caller)
+    {
+        m_async_caller = caller;
+
+        resetAsyncExecutor();
+    }
+
+    private void resetAsyncExecutor()
+    {
+        // queued work on the old executor still finishes, new work goes to one built with the new settings.
+
+        if (null != m_async)
+        {
+            m_async.close();
+
+            m_async = null;
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async queue depth.")
+    public int getAsyncQueueDepth()
+    {
+        return getAsyncExecutor().getQueueDepth();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async maximum queue depth.")
+    public int getAsyncMaximumQueueDepth()
+    {
+        return getAsyncExecutor().getMaximumQueueDepth();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async active thread count.")
+    public int getAsyncActiveCount()
+    {
+        return getAsyncExecutor().getActiveCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async submitted count.")
+    public long getAsyncSubmittedCount()
+    {
+        return getAsyncExecutor().getSubmittedCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async rejected count.")
+    public long getAsyncRejectedCount()
+    {
+        return getAsyncExecutor().getRejectedCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async caller runs count.")
+    public long getAsyncCallerRunsCount()
+    {
+        return getAsyncExecutor().getCallerRunsCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor async failed count.")
+    public long getAsyncFailedCount()
+    {
+        return getAsyncExecutor().getFailedCount();
+    }
+
+    @Override
+    public GSQLKeysetPager pager(final String query, final List<String> keys)
+    {
+        final String ikey = Objects.requireNonNull(query, "Keyset query was null") + '\u0000' + Objects.requireNonNull(keys, "Keyset columns were null");
+
+        GSQLKeysetPager pager = m_pagers.get(ikey);
+
+        if (null == pager)
+        {
+            pager = new GSQLKeysetPager(query, keys, m_keyset_limit);
+
+            m_pagers.put(ikey, pager);
+        }
+        return pager;
+    }
+
+    public void setKeysetLimitClause(final String limit)
+    {
+        m_keyset_limit = StringOps.requireTrimOrNull(limit, "Keyset limit clause is null");
+
+        m_pagers.clear();
+    }
+
+    public String getKeysetLimitClause()
+    {
+        return m_keyset_limit;
+    }
+
+    protected void reset()
+    {
+        // each thread picks the new settings up on its next gsql().
+
+        m_config.incrementAndGet();
+    }
+
+    @Override
+    public GSQLColumnPlanCache getColumnPlanCache()
+    {
+        return m_column_plans;
+    }
+
+    public void setColumnPlanCacheSize(final int size)
+    {
+        m_column_plans.setMaximumSize(size);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor column plan cache size.")
+    public int getColumnPlanCacheSize()
+    {
+        return m_column_plans.size();
     }
 
     @Override
@@ -143,6 +1074,12 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
         return m_setobj_list;
     }
 
+    @Override
+    public GSQLStatementSetObjectDispatcher getStatementSetObjectDispatcher()
+    {
+        return m_setobj_dispatch;
+    }
+
     @Override
     public List<IGSQLPreProcessConnectionHandler> getPreProcessConnectionHandlers()
     {
@@ -160,6 +1097,37 @@ public class GSQLDescriptor extends Activatable implements IGSQLDescriptor
     @ManagedOperation(description = "Set GSQLDescriptor active.")
     public final boolean setActive(final boolean active)
     {
-        return super.setActive(active);
+        final boolean was = isActive();
+
+        final boolean prev = super.setActive(active);
+
+        // coming back into service, open its connections before the first request needs them.
+
+        if ((active) && (false == was))
+        {
+            try
+            {
+                warmUp();
+            }
+            catch (SQLException e)
+            {
+                logger.error("Error warming GSQLDescriptor [" + getName() + "]", e);
+            }
+        }
+        return prev;
+    }
+
+    private static final class ThreadGSQL
+    {
+        private final GSQL m_gsql;
+
+        private int        m_config;
+
+        private ThreadGSQL(final GSQL gsql, final int config)
+        {
+            m_gsql = gsql;
+
+            m_config = config;
+        }
     }
 }
@@ -21,6 +21,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.BeansException;
@@ -35,11 +37,17 @@ import com.ait.tooling.common.api.java.util.StringOps;
 @ManagedResource
 public class GSQLProvider implements BeanFactoryAware, IGSQLProvider
 {
-    private static final Logger                          logger        = Logger.getLogger(GSQLProvider.class);
+    public static final long    DEFAULT_DRAIN_MILLIS = 30000L;
 
-    private final String                                 m_default;
+    private static final Logger logger               = Logger.getLogger(GSQLProvider.class);
 
-    private final LinkedHashMap<String, IGSQLDescriptor> m_descriptors = new LinkedHashMap<String, IGSQLDescriptor>();
+    private final String        m_default;
+
+    private volatile Registry   m_registry           = Registry.EMPTY;
+
+    private BeanFactory         m_factory;
+
+    private long                m_drain_millis       = DEFAULT_DRAIN_MILLIS;
 
     public GSQLProvider(final String name)
     {
@@ -49,36 +57,51 @@ public class GSQLProvider implements BeanFactoryAware, IGSQLProvider
     }
 
     @Override
-    public IGSQLDescriptor getSQLDescriptor(String name)
+    public IGSQLDescriptor getSQLDescriptor(final String name)
     {
-        name = StringOps.toTrimOrNull(name);
+        final Registry registry = m_registry;
+
+        // names are stored trimmed, so the exact lookup is the hot path and trimming only happens on a miss.
+
+        final IGSQLDescriptor descriptor = (null == name) ? null : registry.m_map.get(name);
+
+        if (null != descriptor)
+        {
+            return descriptor;
+        }
+        final String trim = StringOps.toTrimOrNull(name);
 
-        if (null != name)
+        if (null != trim)
         {
-            return m_descriptors.get(name);
+            return registry.m_map.get(trim);
         }
-        logger.error("ISQLDescriptor Name (" + name + ") not found");
+        logger.error("ISQLDescriptor Name (" + trim + ") not found");
 
         return null;
     }
 
     @Override
+    @ManagedOperation(description = "Get SQLDescriptor names")
     public List<String> getSQLDescriptorNames()
     {
-        return Collections.unmodifiableList(new ArrayList<String>(m_descriptors.keySet()));
+        return m_registry.m_names;
     }
 
     @Override
     public List<IGSQLDescriptor> getSQLDescriptors()
     {
-        return Collections.unmodifiableList(new ArrayList<IGSQLDescriptor>(m_descriptors.values()));
+        return m_registry.m_descriptors;
     }
 
     @Override
     public void setBeanFactory(final BeanFactory factory) throws BeansException
     {
+        m_factory = factory;
+
         if (factory instanceof DefaultListableBeanFactory)
         {
+            final LinkedHashMap<String, IGSQLDescriptor> found = new LinkedHashMap<String, IGSQLDescriptor>();
+
             for (String name : ((DefaultListableBeanFactory) factory).getBeansOfType(IGSQLDescriptor.class).keySet())
             {
                 name = StringOps.toTrimOrNull(name);
@@ -93,18 +116,179 @@ public class GSQLProvider implements BeanFactoryAware, IGSQLProvider
 
                         logger.info("Found ISQLDescriptor(" + name + ") class " + descriptor.getClass().getName());
 
-                        m_descriptors.put(name, descriptor);
+                        warmUp(name, descriptor);
+
+                        found.put(name, descriptor);
                     }
                 }
             }
+            synchronized (this)
+            {
+                final LinkedHashMap<String, IGSQLDescriptor> next = new LinkedHashMap<String, IGSQLDescriptor>(m_registry.m_map);
+
+                next.putAll(found);
+
+                m_registry = new Registry(next);
+            }
+        }
+    }
+
+    public IGSQLDescriptor register(final String name, final IGSQLDescriptor descriptor)
+    {
+        final String trim = StringOps.requireTrimOrNull(name, "ISQLDescriptor name is null");
+
+        Objects.requireNonNull(descriptor, "ISQLDescriptor was null");
+
+        descriptor.setName(trim);
+
+        // warm before publishing, the first requests routed to it should find open connections.
+
+        warmUp(trim, descriptor);
+
+        final IGSQLDescriptor prev;
+
+        synchronized (this)
+        {
+            final LinkedHashMap<String, IGSQLDescriptor> next = new LinkedHashMap<String, IGSQLDescriptor>(m_registry.m_map);
+
+            prev = next.put(trim, descriptor);
+
+            m_registry = new Registry(next);
+        }
+        logger.info(((null == prev) ? "Added" : "Replaced") + " ISQLDescriptor(" + trim + ") class " + descriptor.getClass().getName());
+
+        // callers already holding the old descriptor keep using it, only new lookups see the replacement.
+
+        if ((null != prev) && (prev != descriptor))
+        {
+            retire(trim, prev);
+        }
+        return prev;
+    }
+
+    public IGSQLDescriptor unregister(final String name)
+    {
+        final String trim = StringOps.requireTrimOrNull(name, "ISQLDescriptor name is null");
+
+        final IGSQLDescriptor prev;
+
+        synchronized (this)
+        {
+            final LinkedHashMap<String, IGSQLDescriptor> next = new LinkedHashMap<String, IGSQLDescriptor>(m_registry.m_map);
+
+            prev = next.remove(trim);
+
+            if (null == prev)
+            {
+                return null;
+            }
+            m_registry = new Registry(next);
         }
+        logger.info("Removed ISQLDescriptor(" + trim + ")");
+
+        retire(trim, prev);
+
+        return prev;
+    }
+
+    @ManagedOperation(description = "Replace a SQLDescriptor with a new instance of its prototype bean")
+    public boolean reloadSQLDescriptor(final String name)
+    {
+        final String trim = StringOps.requireTrimOrNull(name, "ISQLDescriptor name is null");
+
+        final BeanFactory factory = m_factory;
+
+        if ((null == factory) || (false == factory.containsBean(trim)))
+        {
+            logger.error("ISQLDescriptor bean (" + trim + ") not found");
+
+            return false;
+        }
+        final IGSQLDescriptor descriptor = factory.getBean(trim, IGSQLDescriptor.class);
+
+        if (descriptor == getSQLDescriptor(trim))
+        {
+            // a singleton bean hands back the same instance, there is nothing to swap.
+
+            logger.error("ISQLDescriptor bean (" + trim + ") is not a prototype");
+
+            return false;
+        }
+        register(trim, descriptor);
+
+        return true;
+    }
+
+    @ManagedOperation(description = "Remove and close a SQLDescriptor")
+    public boolean removeSQLDescriptor(final String name)
+    {
+        return (null != unregister(name));
+    }
+
+    public long getDrainMillis()
+    {
+        return m_drain_millis;
+    }
+
+    public void setDrainMillis(final long millis)
+    {
+        m_drain_millis = Math.max(0L, millis);
+    }
+
+    protected void warmUp(final String name, final IGSQLDescriptor descriptor)
+    {
+        try
+        {
+            final int count = descriptor.warmUp();
+
+            if (count > 0)
+            {
+                logger.info("Warmed ISQLDescriptor(" + name + ") with " + count + " connections");
+            }
+        }
+        catch (Exception e)
+        {
+            logger.error("Error warming ISQLDescriptor(" + name + ")", e);
+        }
+    }
+
+    protected void retire(final String name, final IGSQLDescriptor descriptor)
+    {
+        final long millis = getDrainMillis();
+
+        // stop new work right away, queries already running on the old pool finish there and the caller does not wait for them.
+
+        descriptor.setActive(false);
+
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    if (false == descriptor.drain(millis))
+                    {
+                        logger.error("ISQLDescriptor(" + name + ") closed with queries still in flight after " + millis + "ms");
+                    }
+                }
+                catch (Exception e)
+                {
+                    logger.error("Error closing ISQLDescriptor(" + name + ")", e);
+                }
+            }
+        }, "GSQLDrain-" + name);
+
+        thread.setDaemon(true);
+
+        thread.start();
     }
 
     @Override
     @ManagedOperation(description = "Close all SQLDescriptors")
     public void close() throws IOException
     {
-        for (IGSQLDescriptor item : m_descriptors.values())
+        for (IGSQLDescriptor item : m_registry.m_descriptors)
         {
             try
             {
@@ -122,4 +306,26 @@ public class GSQLProvider implements BeanFactoryAware, IGSQLProvider
     {
         return m_default;
     }
+
+    private static final class Registry
+    {
+        private static final Registry              EMPTY = new Registry(new LinkedHashMap<String, IGSQLDescriptor>());
+
+        private final Map<String, IGSQLDescriptor> m_map;
+
+        private final List<String>                 m_names;
+
+        private final List<IGSQLDescriptor>        m_descriptors;
+
+        private Registry(final LinkedHashMap<String, IGSQLDescriptor> map)
+        {
+            // never modified after construction, readers only ever see a complete snapshot through the volatile field.
+
+            m_map = map;
+
+            m_names = Collections.unmodifiableList(new ArrayList<String>(map.keySet()));
+
+            m_descriptors = Collections.unmodifiableList(new ArrayList<IGSQLDescriptor>(map.values()));
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.support.spring;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.GSQLReplicaDataSource;
+import com.ait.tooling.server.sql.GSQLReplicaPolicy;
+
+@ManagedResource
+public class GSQLRoutingDescriptor extends GSQLDescriptor
+{
+    private final GSQLReplicaDataSource m_replicas;
+
+    private final boolean               m_owned;
+
+    public GSQLRoutingDescriptor(final DataSource primary, final List<DataSource> replicas)
+    {
+        this(primary, new GSQLReplicaDataSource(replicas), true);
+    }
+
+    public GSQLRoutingDescriptor(final DataSource primary, final List<DataSource> replicas, final GSQLReplicaPolicy policy)
+    {
+        this(primary, new GSQLReplicaDataSource(replicas, policy), true);
+    }
+
+    public GSQLRoutingDescriptor(final DataSource primary, final GSQLReplicaDataSource replicas)
+    {
+        this(primary, replicas, false);
+    }
+
+    private GSQLRoutingDescriptor(final DataSource primary, final GSQLReplicaDataSource replicas, final boolean owned)
+    {
+        super(primary);
+
+        m_replicas = Objects.requireNonNull(replicas, "GSQLReplicaDataSource was null");
+
+        m_owned = owned;
+
+        setDescription("Routing GSQLDescriptor (" + replicas.getReplicaCount() + " replicas)");
+    }
+
+    public GSQLReplicaDataSource getReplicaDataSource()
+    {
+        return m_replicas;
+    }
+
+    @Override
+    protected void configure(final GSQL gsql)
+    {
+        super.configure(gsql);
+
+        gsql.setReadDataSource(m_replicas);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            super.close();
+        }
+        finally
+        {
+            // the replica set built here from a list is ours to close, one handed in belongs to the caller.
+
+            if ((m_owned) || (isCloseDataSource()))
+            {
+                m_replicas.close();
+            }
+        }
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor replica count.")
+    public int getReplicaCount()
+    {
+        return m_replicas.getReplicaCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor healthy replica count.")
+    public int getHealthyReplicaCount()
+    {
+        return m_replicas.getHealthyReplicaCount();
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor replica load balancing policy.")
+    public String getReplicaPolicy()
+    {
+        return m_replicas.getPolicy().name();
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor replica load balancing policy.")
+    public void setReplicaPolicy(final String policy)
+    {
+        m_replicas.setPolicy(GSQLReplicaPolicy.valueOf(StringOps.requireTrimOrNull(policy, "GSQLReplicaPolicy is null").toUpperCase()));
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor replica eject time in milliseconds.")
+    public long getReplicaEjectMillis()
+    {
+        return m_replicas.getEjectMillis();
+    }
+
+    @ManagedOperation(description = "Set GSQLDescriptor replica eject time in milliseconds.")
+    public void setReplicaEjectMillis(final long millis)
+    {
+        m_replicas.setEjectMillis(millis);
+    }
+
+    @ManagedOperation(description = "Get GSQLDescriptor replica statistics as JSON.")
+    public String getReplicaStatistics()
+    {
+        return m_replicas.toJSONObject().toJSONString();
+    }
+}
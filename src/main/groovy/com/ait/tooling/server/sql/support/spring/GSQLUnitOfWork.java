@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.support.spring;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Objects;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.sql.GSQL;
+
+import groovy.lang.Closure;
+
+public final class GSQLUnitOfWork
+{
+    private static final ThreadLocal<HashMap<String, GSQLUnitOfWork>> s_bound = new ThreadLocal<HashMap<String, GSQLUnitOfWork>>();
+
+    private final IGSQLDescriptor                                     m_descriptor;
+
+    private final GSQL                                                m_gsql;
+
+    private GSQLUnitOfWork(final IGSQLDescriptor descriptor, final GSQL gsql)
+    {
+        m_descriptor = descriptor;
+
+        m_gsql = gsql;
+    }
+
+    public IGSQLDescriptor getDescriptor()
+    {
+        return m_descriptor;
+    }
+
+    public GSQL getGSQL()
+    {
+        return m_gsql;
+    }
+
+    public static GSQLUnitOfWork bound(final String name)
+    {
+        final HashMap<String, GSQLUnitOfWork> map = s_bound.get();
+
+        if ((null == map) || (null == name))
+        {
+            return null;
+        }
+        final GSQLUnitOfWork work = map.get(name);
+
+        if (null != work)
+        {
+            return work;
+        }
+        final String trim = StringOps.toTrimOrNull(name);
+
+        if (null == trim)
+        {
+            return null;
+        }
+        return map.get(trim);
+    }
+
+    public static <T> T run(final String name, final IGSQLDescriptor descriptor, final boolean transact, final boolean readonly, final Closure<T> closure) throws SQLException
+    {
+        final String trim = StringOps.requireTrimOrNull(name, "GSQLDescriptor name is null");
+
+        final GSQLUnitOfWork outer = bound(trim);
+
+        if (null != outer)
+        {
+            // nested, the outer unit of work already holds the connection, this level only adds a savepoint.
+
+            return outer.m_gsql.unitOfWork(transact, readonly, closure);
+        }
+        final IGSQLDescriptor desc = Objects.requireNonNull(descriptor, "GSQLDescriptor not found");
+
+        final GSQL gsql = desc.gsql();
+
+        HashMap<String, GSQLUnitOfWork> map = s_bound.get();
+
+        if (null == map)
+        {
+            map = new HashMap<String, GSQLUnitOfWork>();
+
+            s_bound.set(map);
+        }
+        // lookups by name inside the closure resolve here, even when the provider swaps the descriptor meanwhile.
+
+        map.put(trim, new GSQLUnitOfWork(desc, gsql));
+
+        try
+        {
+            return gsql.unitOfWork(transact, readonly, closure);
+        }
+        finally
+        {
+            map.remove(trim);
+
+            if (map.isEmpty())
+            {
+                s_bound.remove();
+            }
+        }
+    }
+}
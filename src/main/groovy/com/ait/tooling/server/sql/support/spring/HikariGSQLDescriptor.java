@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.support.spring;
+
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.ait.tooling.common.api.java.util.StringOps;
+import com.ait.tooling.server.sql.GSQLLatencyHistogram;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+@ManagedResource
+public class HikariGSQLDescriptor extends GSQLDescriptor
+{
+    private final HikariDataSource   m_hikari_source;
+
+    private final HikariPoolMetrics  m_hikari_metric;
+
+    public HikariGSQLDescriptor(final Properties properties, final String prefix)
+    {
+        this(new HikariConfig(properties(properties, prefix)));
+    }
+
+    public HikariGSQLDescriptor(final Properties properties)
+    {
+        this(new HikariConfig(Objects.requireNonNull(properties, "Properties was null")));
+    }
+
+    public HikariGSQLDescriptor(final HikariConfig config)
+    {
+        this(Objects.requireNonNull(config, "HikariConfig was null"), new HikariPoolMetrics());
+    }
+
+    private HikariGSQLDescriptor(final HikariConfig config, final HikariPoolMetrics metrics)
+    {
+        super(start(config, metrics));
+
+        m_hikari_source = (HikariDataSource) getDataSource();
+
+        m_hikari_metric = metrics;
+
+        // the pool is built here, so closing the descriptor closes it unless told otherwise.
+
+        setCloseDataSource(true);
+
+        setDescription("HikariCP GSQLDescriptor (" + m_hikari_source.getPoolName() + ")");
+    }
+
+    private static final HikariDataSource start(final HikariConfig config, final HikariPoolMetrics metrics)
+    {
+        // a configured Dropwizard registry or tracker factory wins, Hikari refuses to have both.
+
+        if ((null == config.getMetricRegistry()) && (null == config.getMetricsTrackerFactory()))
+        {
+            config.setMetricsTrackerFactory(metrics);
+        }
+        return new HikariDataSource(config);
+    }
+
+    private static final Properties properties(final Properties properties, String prefix)
+    {
+        Objects.requireNonNull(properties, "Properties was null");
+
+        prefix = StringOps.toTrimOrNull(prefix);
+
+        if (null == prefix)
+        {
+            return properties;
+        }
+        if (false == prefix.endsWith("."))
+        {
+            prefix = prefix + ".";
+        }
+        final Properties select = new Properties();
+
+        for (String name : properties.stringPropertyNames())
+        {
+            if ((name.startsWith(prefix)) && (name.length() > prefix.length()))
+            {
+                select.setProperty(name.substring(prefix.length()), properties.getProperty(name));
+            }
+        }
+        return select;
+    }
+
+    @Override
+    protected int getDefaultAsyncThreadCount()
+    {
+        // more threads than connections would only wait inside the pool.
+
+        return m_hikari_source.getMaximumPoolSize();
+    }
+
+    public HikariDataSource getHikariDataSource()
+    {
+        return m_hikari_source;
+    }
+
+    @ManagedOperation(description = "Get HikariCP maximum pool size.")
+    public int getMaximumPoolSize()
+    {
+        return m_hikari_source.getMaximumPoolSize();
+    }
+
+    @ManagedOperation(description = "Get HikariCP active connections.")
+    public int getActiveConnections()
+    {
+        return m_hikari_metric.getPoolStats().getActiveConnections();
+    }
+
+    @ManagedOperation(description = "Get HikariCP idle connections.")
+    public int getIdleConnections()
+    {
+        return m_hikari_metric.getPoolStats().getIdleConnections();
+    }
+
+    @ManagedOperation(description = "Get HikariCP total connections.")
+    public int getTotalConnections()
+    {
+        return m_hikari_metric.getPoolStats().getTotalConnections();
+    }
+
+    @ManagedOperation(description = "Get HikariCP threads waiting for a connection.")
+    public int getThreadsAwaitingConnection()
+    {
+        return m_hikari_metric.getPoolStats().getPendingThreads();
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire count.")
+    public long getConnectionAcquireCount()
+    {
+        return m_hikari_metric.getAcquireHistogram().getCount();
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire time percentile in microseconds.")
+    public double getConnectionAcquireMicrosPercentile(final double percentile)
+    {
+        return m_hikari_metric.getAcquireHistogram().getPercentile(percentile) / 1000.0;
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire time p50 in microseconds.")
+    public double getConnectionAcquireMicrosP50()
+    {
+        return getConnectionAcquireMicrosPercentile(50);
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire time p95 in microseconds.")
+    public double getConnectionAcquireMicrosP95()
+    {
+        return getConnectionAcquireMicrosPercentile(95);
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire time p99 in microseconds.")
+    public double getConnectionAcquireMicrosP99()
+    {
+        return getConnectionAcquireMicrosPercentile(99);
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection acquire time maximum in microseconds.")
+    public double getConnectionAcquireMicrosMaximum()
+    {
+        return m_hikari_metric.getAcquireHistogram().getMaximum() / 1000.0;
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection usage time p50 in milliseconds.")
+    public long getConnectionUsageMillisP50()
+    {
+        return m_hikari_metric.getUsageHistogram().getPercentile(50);
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection usage time p99 in milliseconds.")
+    public long getConnectionUsageMillisP99()
+    {
+        return m_hikari_metric.getUsageHistogram().getPercentile(99);
+    }
+
+    @ManagedOperation(description = "Get HikariCP connection timeout count.")
+    public long getConnectionTimeoutCount()
+    {
+        return m_hikari_metric.getTimeoutCount();
+    }
+
+    @ManagedOperation(description = "Reset HikariCP acquire, usage and timeout statistics.")
+    public void resetPoolStatistics()
+    {
+        m_hikari_metric.reset();
+    }
+
+    private static final class HikariPoolMetrics implements MetricsTrackerFactory
+    {
+        private static final PoolStats     NO_POOL_STATS = new PoolStats(Long.MAX_VALUE)
+        {
+            @Override
+            protected void update()
+            {
+            }
+        };
+
+        private final GSQLLatencyHistogram m_acquire     = new GSQLLatencyHistogram();
+
+        private final GSQLLatencyHistogram m_usages      = new GSQLLatencyHistogram();
+
+        private final AtomicLong           m_timeout     = new AtomicLong();
+
+        private volatile PoolStats         m_poolstats   = NO_POOL_STATS;
+
+        @Override
+        public MetricsTracker create(final String name, final PoolStats stats)
+        {
+            m_poolstats = stats;
+
+            return new MetricsTracker()
+            {
+                @Override
+                public void recordConnectionAcquiredNanos(final long nanos)
+                {
+                    m_acquire.record(nanos);
+                }
+
+                @Override
+                public void recordConnectionUsageMillis(final long millis)
+                {
+                    m_usages.record(millis);
+                }
+
+                @Override
+                public void recordConnectionTimeout()
+                {
+                    m_timeout.incrementAndGet();
+                }
+            };
+        }
+
+        PoolStats getPoolStats()
+        {
+            return m_poolstats;
+        }
+
+        GSQLLatencyHistogram getAcquireHistogram()
+        {
+            return m_acquire;
+        }
+
+        GSQLLatencyHistogram getUsageHistogram()
+        {
+            return m_usages;
+        }
+
+        long getTimeoutCount()
+        {
+            return m_timeout.get();
+        }
+
+        void reset()
+        {
+            m_acquire.reset();
+
+            m_usages.reset();
+
+            m_timeout.set(0);
+        }
+    }
+}
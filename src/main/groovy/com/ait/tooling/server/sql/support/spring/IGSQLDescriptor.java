@@ -17,6 +17,8 @@
 package com.ait.tooling.server.sql.support.spring;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.List;
 
 import javax.sql.DataSource;
@@ -24,6 +26,12 @@ import javax.sql.DataSource;
 import com.ait.tooling.common.api.types.IActivatable;
 import com.ait.tooling.common.api.types.INamedType;
 import com.ait.tooling.server.sql.GSQL;
+import com.ait.tooling.server.sql.GSQLAsyncExecutor;
+import com.ait.tooling.server.sql.GSQLColumnPlanCache;
+import com.ait.tooling.server.sql.GSQLKeysetPager;
+import com.ait.tooling.server.sql.GSQLResultCache;
+import com.ait.tooling.server.sql.GSQLStatementSetObjectDispatcher;
+import com.ait.tooling.server.sql.IGSQLInstrumentationHandler;
 import com.ait.tooling.server.sql.IGSQLPreProcessConnectionHandler;
 import com.ait.tooling.server.sql.IGSQLRowObjectMapper;
 import com.ait.tooling.server.sql.IGSQLStatementSetObjectHandler;
@@ -40,6 +48,8 @@ public interface IGSQLDescriptor extends INamedType, IActivatable, Closeable
 
     public List<IGSQLStatementSetObjectHandler> getStatementSetObjectHandlers();
 
+    public GSQLStatementSetObjectDispatcher getStatementSetObjectDispatcher();
+
     public void setPreProcessConnectionHandlers(List<IGSQLPreProcessConnectionHandler> list);
 
     public List<IGSQLPreProcessConnectionHandler> getPreProcessConnectionHandlers();
@@ -48,5 +58,23 @@ public interface IGSQLDescriptor extends INamedType, IActivatable, Closeable
 
     public void setRowObjectMapper(IGSQLRowObjectMapper row_object_mapper);
 
+    public GSQLColumnPlanCache getColumnPlanCache();
+
+    public IGSQLInstrumentationHandler getInstrumentationHandler();
+
+    public GSQLResultCache getResultCache();
+
+    public GSQLKeysetPager pager(String query, List<String> keys);
+
+    public GSQLAsyncExecutor getAsyncExecutor();
+
+    public void setInstrumentationHandler(IGSQLInstrumentationHandler instrument);
+
     public GSQL make();
+
+    public GSQL gsql();
+
+    public int warmUp() throws SQLException;
+
+    public boolean drain(long millis) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,1324 @@
+/*
+ * Copyright (c) 2017 Ahome' Innovation Technologies. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ait.tooling.server.sql.test
+
+import java.nio.channels.Channels
+import java.sql.Connection
+import java.sql.Statement
+import java.sql.SQLException
+import java.sql.SQLTimeoutException
+import java.sql.SQLTransientConnectionException
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+import javax.sql.DataSource
+
+import groovy.json.JsonSlurper
+
+import org.h2.jdbcx.JdbcDataSource
+
+import com.zaxxer.hikari.HikariConfig
+import com.zaxxer.hikari.HikariDataSource
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+import com.ait.tooling.server.core.json.JSONArray
+import com.ait.tooling.server.core.json.JSONObject
+import com.ait.tooling.server.sql.GSQL
+import com.ait.tooling.server.sql.GSQLCircuitBreaker
+import com.ait.tooling.server.sql.GSQLColumnPlanCache
+import com.ait.tooling.server.sql.GSQLConcurrencyLimiter
+import com.ait.tooling.server.sql.GSQLDataLoader
+import com.ait.tooling.server.sql.GSQLFanOut
+import com.ait.tooling.server.sql.GSQLFanOutTask
+import com.ait.tooling.server.sql.GSQLFingerprint
+import com.ait.tooling.server.sql.GSQLInFlightCounter
+import com.ait.tooling.server.sql.GSQLInstrumentationStatistics
+import com.ait.tooling.server.sql.GSQLReplicaPolicy
+import com.ait.tooling.server.sql.GSQLResultCache
+import com.ait.tooling.server.sql.GSQLStatementSetObjectDispatcher
+import com.ait.tooling.server.sql.IGSQLPhysicalConnectionHandler
+import com.ait.tooling.server.sql.IGSQLPreProcessConnectionHandler
+import com.ait.tooling.server.sql.IGSQLStatementSetObjectHandler
+import com.ait.tooling.server.sql.IGSQLTypedStatementSetObjectHandler
+import com.ait.tooling.server.sql.support.GSQLSupport
+import com.ait.tooling.server.sql.support.spring.GSQLDescriptor
+import com.ait.tooling.server.sql.support.spring.GSQLProvider
+import com.ait.tooling.server.sql.support.spring.GSQLRoutingDescriptor
+import com.ait.tooling.server.sql.support.spring.HikariGSQLDescriptor
+import com.ait.tooling.server.sql.support.spring.IGSQLProvider
+
+class GSQLTestsSpecification extends Specification
+{
+    @Shared
+    JdbcDataSource source
+
+    def setupSpec()
+    {
+        source = new JdbcDataSource()
+        source.setURL("jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        def gsql = new GSQL(source)
+        gsql.execute("create table items (id bigint primary key, name varchar(64), price double)")
+        (1..25).each { long i ->
+            gsql.executeInsert("insert into items (id, name, price) values (?, ?, ?)", [i, "item" + i, i * 1.5d])
+        }
+    }
+
+    def cleanupSpec()
+    {
+        new GSQL(source).execute("drop table items")
+    }
+
+    def "test jstream matches jarr"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def save = new StringWriter()
+        def rows = gsql.jstream(save, "select id, name, price from items where id <= ? order by id", [10])
+        def jarr = new JSONObject(GSQL.jarr(gsql.rows("select id, name, price from items where id <= ? order by id", [10])))
+
+        expect:
+        rows == 10
+        save.toString() == jarr.toJSONString()
+    }
+
+    def "test jstream empty result"()
+    {
+        setup:
+        def save = new ByteArrayOutputStream()
+        def rows = new GSQL(source).jstream(save, "select id from items where id < 0")
+
+        expect:
+        rows == 0
+        save.toString("UTF-8") == new JSONObject(new JSONArray()).toJSONString()
+    }
+
+    def "test jsql reuses column plan"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def plan = new GSQLColumnPlanCache(4)
+        gsql.setColumnPlanCache(plan)
+        def frst = gsql.jsql("select id, name, price from items where id <= ? order by id", [5])
+        def next = gsql.jsql("select id, name, price from items where id <= ? order by id", [5])
+
+        expect:
+        plan.size() == 1
+        frst == next
+        frst == new JSONObject(GSQL.jarr(gsql.rows("select id, name, price from items where id <= ? order by id", [5])))
+    }
+
+    def "test column plan is rebuilt when a column is renamed"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def plan = new GSQLColumnPlanCache(4)
+        gsql.setColumnPlanCache(plan)
+        gsql.execute("create table renamed (id bigint, label varchar(32))")
+        gsql.executeInsert("insert into renamed (id, label) values (1, 'one')")
+        def frst = gsql.jarr("select * from renamed")[0] as Map
+        gsql.execute("alter table renamed alter column label rename to title")
+        def next = gsql.jarr("select * from renamed")[0] as Map
+
+        expect:
+        frst.keySet() == ["ID", "LABEL"] as Set
+        next.keySet() == ["ID", "TITLE"] as Set
+        next.get("TITLE") == "one"
+
+        cleanup:
+        gsql.execute("drop table renamed")
+    }
+
+    def "test typed set object dispatch"()
+    {
+        setup:
+        def seen = []
+        def strs = [setObject: { ps, int i, v -> seen << "strs"; false }, getStatementSetObjectClasses: { [CharSequence] }] as IGSQLTypedStatementSetObjectHandler
+        def nums = [setObject: { ps, int i, v -> seen << "nums"; false }, getStatementSetObjectClasses: { [Number] }] as IGSQLTypedStatementSetObjectHandler
+        def anys = { ps, int i, v -> seen << "anys"; false } as IGSQLStatementSetObjectHandler
+        def gsql = new GSQL(source)
+        gsql.setStatementSetObjectDispatcher(new GSQLStatementSetObjectDispatcher([strs, anys, nums]))
+        def rows = gsql.rows("select id from items where id = ? and name = ?", [3L, "item3"])
+
+        expect:
+        rows.size() == 1
+        seen == ["anys", "nums", "strs", "anys"]
+    }
+
+    def "test descriptor reuses GSQL per thread"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def mine = desc.gsql()
+        def them = null
+        def thrd = Thread.start { them = desc.gsql() }
+        thrd.join()
+
+        expect:
+        mine.is(desc.gsql())
+        them != null
+        false == mine.is(them)
+        mine.jarr("select count(*) as total from items")[0]['TOTAL'] == 25
+    }
+
+    def "test hikari descriptor from prefixed properties"()
+    {
+        setup:
+        def prop = new Properties()
+        prop.setProperty("sqlprovider.tests.jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("sqlprovider.tests.maximumPoolSize", "2")
+        prop.setProperty("sqlprovider.other.maximumPoolSize", "9")
+        def desc = new HikariGSQLDescriptor(prop, "sqlprovider.tests")
+        def rows = desc.gsql().jarr("select id from items")
+
+        expect:
+        rows.size() == 25
+        desc.getMaximumPoolSize() == 2
+        desc.getConnectionAcquireCount() > 0
+        desc.getConnectionAcquireMicrosP99() >= desc.getConnectionAcquireMicrosP50()
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test instrumentation statistics per fingerprint"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setName("tests")
+        def gsql = desc.gsql()
+        gsql.jarr("select id from items where id < 10")
+        gsql.jarr("select id from items where id < 20")
+        gsql.jstream(new StringWriter(), "select id from items where id < ?", [5])
+        gsql.rows("select id from items where id < ?", [5])
+        def stat = (GSQLInstrumentationStatistics) desc.getInstrumentationHandler()
+        def print = GSQLFingerprint.fingerprint("select id from items where id < 10")
+
+        expect:
+        print == "select id from items where id < ?"
+        GSQLFingerprint.fingerprint("SELECT  x FROM t WHERE n = 'a''b' AND i IN (?, ?,?)") == "select x from t where n = ? and i in (?+)"
+        stat.getConnectionHistogram().getCount() == 4
+        stat.getExecuteHistogram(print).getCount() == 4
+        desc.getInstrumentationStatistics().contains(print)
+    }
+
+    def "test instrumentation reports UTF-8 bytes of JSON from jsql and jstream"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def gsql = desc.gsql()
+        def json = gsql.jsql("select name from items where id = ?", [1]).toJSONString()
+        def byts = new ByteArrayOutputStream()
+        gsql.jstream(byts, "select 'n\u00e9\u20ac' as label from items where id < ?", [3])
+        gsql.jarr("select id from items where id = ?", [1])
+        def stat = ((GSQLInstrumentationStatistics) desc.getInstrumentationHandler()).toJSONObject().get("statements") as Map
+        desc.setMeasureJSON(false)
+        desc.gsql().jsql("select price from items where id = ?", [1])
+
+        expect:
+        stat.get("select name from items where id = ?").get("bytes") == json.getBytes("UTF-8").length
+        stat.get("select ? as label from items where id < ?").get("bytes") == byts.size()
+        stat.get("select id from items where id = ?").get("bytes") == 0L
+        desc.getInstrumentationStatistics().contains("select price from items where id = ?")
+        ((GSQLInstrumentationStatistics) desc.getInstrumentationHandler()).toJSONObject().get("statements").get("select price from items where id = ?").get("bytes") == 0L
+    }
+
+    def "test batch insert with lists and maps"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        gsql.execute("create table batched (id bigint auto_increment primary key, name varchar(64))")
+        def frst = gsql.batch("insert into batched (name) values (?)", (1..250).collect { ["list" + it] }, 100, 2, true)
+        def next = gsql.batch("insert into batched (name) values (:name)", (1..30).stream().map { [name: "map" + it] }, 7)
+        def rows = gsql.firstRow("select count(*) as total from batched")
+
+        expect:
+        frst.getRowCount() == 250
+        frst.getBatchCount() == 3
+        frst.getCommitCount() == 2
+        frst.getUpdateCount() == 250
+        frst.getGeneratedKeys().size() == 250
+        next.getBatchCount() == 5
+        next.getUpdateCount() == 30
+        rows.total == 280
+
+        cleanup:
+        gsql.execute("drop table batched")
+    }
+
+    def "test result cache hits and table invalidation"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setResultCacheSize(16)
+        def gsql = desc.gsql()
+        gsql.execute("create table cached (id bigint primary key, name varchar(64))")
+        gsql.executeInsert("insert into cached (id, name) values (?, ?)", [1, "one"])
+        def frst = gsql.jsql("select id, name from cached where id = ?", [1])
+        frst.put("changed", true)
+        def next = gsql.jsql("select id, name from cached where id = ?", [1])
+        gsql.executeUpdate("update CACHED set name = ? where id = ?", ["uno", 1])
+        def last = gsql.jsql("select id, name from cached where id = ?", [1])
+        def cache = desc.getResultCache()
+
+        expect:
+        GSQLResultCache.getReadTables("select a.x from s.cached a join \"other\" b on a.id = b.id") == ["cached", "other"] as Set
+        GSQLResultCache.getWriteTables("delete from cached where id = 1") == ["cached"] as Set
+        next.containsKey("changed") == false
+        last.toJSONString().contains("uno")
+        cache.getHitCount() == 1
+        cache.getMissCount() == 2
+        cache.getInvalidatedCount() == 1
+
+        cleanup:
+        gsql.execute("drop table cached")
+    }
+
+    def "test routing reads to replicas and writes to primary"()
+    {
+        setup:
+        def replica = new JdbcDataSource()
+        replica.setURL("jdbc:h2:mem:gsqlreplica;DB_CLOSE_DELAY=-1")
+        def broken = [getConnection: { throw new SQLException("replica down") }] as DataSource
+        new GSQL(replica).execute("create table routed (id bigint primary key, name varchar(64))")
+        new GSQL(replica).executeInsert("insert into routed (id, name) values (1, 'replica')")
+        new GSQL(source).execute("create table routed (id bigint primary key, name varchar(64))")
+        new GSQL(source).executeInsert("insert into routed (id, name) values (1, 'primary')")
+        def desc = new GSQLRoutingDescriptor(source, [broken, replica], GSQLReplicaPolicy.ROUND_ROBIN)
+        def gsql = desc.gsql()
+        def read = (1..4).collect { gsql.firstRow("select name from routed where id = 1").name }
+        def rows = gsql.jarr("select name from routed")
+        gsql.executeUpdate("update routed set name = 'written' where id = 1")
+        def lock = gsql.firstRow("select name from routed where id = 1 for update").name
+        def tran = null
+        gsql.withTransaction { tran = gsql.firstRow("select name from routed where id = 1").name }
+
+        expect:
+        read == ["replica"] * 4
+        rows.toJSONString().contains("replica")
+        lock == "written"
+        tran == "written"
+        GSQL.isReadQuery("with x as (delete from routed returning *) select * from x") == false
+        desc.getReplicaCount() == 2
+        desc.getHealthyReplicaCount() == 1
+
+        cleanup:
+        new GSQL(replica).execute("drop table routed")
+        new GSQL(source).execute("drop table routed")
+    }
+
+    def "test fan out keyed results with partial failure and timeout"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def pool = new GSQLFanOut(4)
+        def tasks = [
+            new GSQLFanOutTask("east", "select id from items where id <= ?", [3]),
+            new GSQLFanOutTask("west", "select id from items where id > ?", [22]),
+            new GSQLFanOutTask("gone", "select id from items"),
+            new GSQLFanOutTask("slow", "select id from items")
+        ]
+        def find = { String name ->
+            if (name == "slow") {
+                Thread.sleep(2000)
+            }
+            (name == "gone") ? null : desc.gsql()
+        } as Function<String, GSQL>
+        def result = pool.execute(tasks, 500, find)
+
+        expect:
+        result.isComplete() == false
+        result.getResults().keySet() == ["east", "west"] as Set
+        result.getErrors().keySet() == ["gone", "slow"] as Set
+        result.concat().size() == 6
+        result.keyed().toJSONString().contains("east")
+        result.merged("shard").every { ((JSONObject) it).get("shard") in ["east", "west"] }
+        result.getElapsedMillis() < 2000
+
+        cleanup:
+        pool.close()
+    }
+
+    def "test fan out bounds queries with a query timeout and tags copies of rows"()
+    {
+        setup:
+        def seen = [].asSynchronized()
+        def gsql = new GSQL(source) {
+            @Override
+            JSONArray jarr(String sql, List<Object> params)
+            {
+                seen << getQueryTimeout()
+                super.jarr(sql, params)
+            }
+        }
+        // one permit, the tasks share this GSQL where a descriptor would give each thread its own.
+        def pool = new GSQLFanOut(1)
+        def tasks = [
+            new GSQLFanOutTask("east", "select id from items where id <= ?", [2]),
+            new GSQLFanOutTask("west", "select id from items where id > ?", [24])
+        ]
+        def result = pool.execute(tasks, 5000, { String name -> gsql } as Function<String, GSQL>)
+        def tags = result.merged("shard")
+        def open = pool.execute(tasks.take(1), 0, { String name -> gsql } as Function<String, GSQL>)
+
+        expect:
+        result.isComplete()
+        seen.take(2).every { it >= 1 && it <= 5 }
+        seen[2] == 0
+        gsql.getQueryTimeout() == 0
+        open.isComplete()
+        tags.size() == 3
+        tags.every { ((JSONObject) it).get("shard") in ["east", "west"] }
+        result.concat().every { false == ((JSONObject) it).containsKey("shard") }
+        false == result.keyed().toJSONString().contains("shard")
+
+        cleanup:
+        pool.close()
+    }
+
+    def "test cursor stream and row view close their resources"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def stream = gsql.stream("select id, name from items where id > ? order by id", [5], 4)
+        def names = stream.map { JSONObject row -> row.get("NAME") }.collect()
+        stream.close()
+        def cursor = gsql.cursor("select id, price from items order by id", [], 3)
+        def total = 0
+        while (cursor.advance()) {
+            total += (long) cursor.getObject("ID")
+        }
+        def early = gsql.cursor("select id from items")
+        def frst = early.next()
+        early.close()
+
+        expect:
+        names.size() == 20
+        names[0] == "item6"
+        total == (1..25).sum()
+        cursor.isClosed()
+        cursor.getRowCount() == 25
+        cursor.getColumnLabel(2) == "PRICE"
+        frst.get("ID") == 1
+        early.isClosed()
+        early.hasNext() == false
+    }
+
+    def "test keyset pages with continuation tokens"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def gsql = desc.gsql()
+        def pager = desc.pager("select id, name, price from items where id > ?", ["price desc", "id"])
+        def seen = []
+        def token = null
+        def sizes = []
+        while (true) {
+            def page = pager.page(gsql, [0], token, 10)
+            sizes << page.get("size")
+            seen.addAll(((List) page.get("rows")).collect { ((Map) it).get("ID") })
+            token = page.get("next")
+            if (token == null) {
+                break
+            }
+        }
+        def asc = desc.pager("select id from items", ["id"])
+
+        expect:
+        desc.pager("select id, name, price from items where id > ?", ["price desc", "id"]).is(pager)
+        pager.getAfterSQL().contains("((price < ?) or (price = ? and id > ?))")
+        sizes == [10, 10, 5]
+        seen == (25..1).toList()
+        asc.page(gsql, [], null, 25).get("next") == null
+        ((List) asc.page(gsql, [], asc.page(gsql, [], null, 20).get("next"), 20).get("rows")).size() == 5
+    }
+
+    def "test keyset token from another query is rejected"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def next = desc.pager("select id from items", ["id"]).page(desc.gsql(), [], null, 5).get("next")
+
+        when:
+        desc.pager("select id, name from items", ["id"]).page(desc.gsql(), [], next, 5)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "test physical connection handlers run once per pooled connection"()
+    {
+        setup:
+        def prop = new Properties()
+        prop.setProperty("jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("maximumPoolSize", "1")
+        def desc = new HikariGSQLDescriptor(prop)
+        def runs = 0
+        def each = 0
+        def path = "public"
+        def once = [preProcessConnection: { Connection conn -> runs++ }, getPhysicalConnectionState: { path }] as IGSQLPhysicalConnectionHandler
+        def every = [preProcessConnection: { Connection conn -> each++ }] as IGSQLPreProcessConnectionHandler
+        desc.setPreProcessConnectionHandlers([once, every])
+        def gsql = desc.gsql()
+        (1..5).each { gsql.jarr("select id from items where id = 1") }
+        def frst = runs
+        path = "other"
+        (1..5).each { gsql.jarr("select id from items where id = 1") }
+
+        expect:
+        frst == 1
+        runs == 2
+        each == 10
+        desc.getPhysicalConnectionCount() == 1
+        desc.getPhysicalConnectionSkipCount() == 8
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test activation warms connections through the connection handlers"()
+    {
+        setup:
+        def prop = new Properties()
+        prop.setProperty("jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("maximumPoolSize", "2")
+        def desc = new HikariGSQLDescriptor(prop)
+        def runs = 0
+        def once = [preProcessConnection: { Connection conn -> runs++ }, getPhysicalConnectionState: { "public" }] as IGSQLPhysicalConnectionHandler
+        desc.setPreProcessConnectionHandlers([once])
+        desc.setWarmUpConnections(2)
+        desc.setActive(false)
+        def idle = runs
+        desc.setActive(true)
+        def cold = new GSQLDescriptor(source)
+        cold.setWarmUpStatements(["select id from items where id = ?"])
+
+        expect:
+        idle == 0
+        runs == 2
+        desc.getPhysicalConnectionCount() == 2
+        desc.getInFlightCount() == 0
+        cold.warmUp() == 0
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test async executor bounds its queue and reports rejections"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setAsyncThreadCount(1)
+        desc.setAsyncQueueDepth(1)
+        def exec = desc.getAsyncExecutor()
+        def gate = new CountDownLatch(1)
+        def busy = exec.submit({ gate.await(); desc.gsql().jsql("select count(*) as total from items") } as Callable<JSONObject>)
+        def wait = exec.submit({ "queued" } as Callable<String>)
+        def over = exec.submit({ "rejected" } as Callable<String>)
+        def depth = desc.getAsyncQueueDepth()
+        gate.countDown()
+        def rows = busy.get(5, TimeUnit.SECONDS)
+        desc.setAsyncCallerRuns(true)
+        def runs = desc.getAsyncExecutor().submit({ Thread.currentThread().getName() } as Callable<String>)
+
+        expect:
+        over.isCompletedExceptionally()
+        depth == 1
+        exec.getRejectedCount() == 1
+        wait.get(5, TimeUnit.SECONDS) == "queued"
+        rows.toJSONString().contains("25")
+        runs.get(5, TimeUnit.SECONDS).startsWith("GSQLAsync-")
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test columnar result stores primitive columns and round trips to rows"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def cols = gsql.columnar("select id, name, price, case when id > 2 then null else name end as tag from items where id <= ? order by id", [4])
+        def json = cols.toJSONObject()
+        def text = cols.toJSONString()
+        def rows = cols.toJSONArray()
+
+        expect:
+        cols.getRowCount() == 4
+        cols.getColumnType(1) == "long"
+        cols.getColumnType(2) == "string"
+        cols.getColumnType(3) == "double"
+        cols.getLongColumn(1) == [1L, 2L, 3L, 4L] as long[]
+        cols.getDouble(3, 3) == 6.0d
+        cols.isNull(4, 2)
+        cols.getObject(4, 2) == null
+        cols.getDictionary(4) == ["item1", "item2"]
+        cols.getString(cols.findColumn("name"), 1) == "item2"
+        json.get("rows") == 4
+        json.get("data").get("NAME") == [0, 1, 2, 3]
+        json.get("data").get("TAG") == [0, 1, null, null]
+        text.contains('"dictionary":["item1","item2"]')
+        new JsonSlurper().parseText(text).data.PRICE == [1.5, 3.0, 4.5, 6.0]
+        rows.size() == 4
+        rows.toJSONString() == gsql.jarr("select id, name, price, case when id > 2 then null else name end as tag from items where id <= ? order by id", [4]).toJSONString()
+    }
+
+    def "test GString shapes and prepared statements are reused on a pooled connection"()
+    {
+        setup:
+        def prop = new Properties()
+        prop.setProperty("jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("maximumPoolSize", "1")
+        def desc = new HikariGSQLDescriptor(prop)
+        desc.setStatementCacheSize(8)
+        def gsql = desc.gsql()
+        def hits = GSQL.getShapeCache().getHitCount()
+        def names = (1..5).collect { id -> gsql.jsql("select name from items where id = ${id}").toJSONString() }
+        def none = gsql.jarr("select name from items where name = ${null}")
+        def cache = desc.getStatementCache()
+        gsql.execute("update items set price = price where id = 1")
+
+        expect:
+        names[0].contains("item1")
+        names[4].contains("item5")
+        none.size() == 0
+        GSQL.getShapeCache().getHitCount() - hits >= 4
+        cache.getMissCount() == 2
+        cache.getHitCount() == 4
+        cache.size() == 2
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test slow queries are recorded with parameter types, rows and an EXPLAIN plan"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setSlowQueryThresholdMillis(0)
+        desc.setSlowQueryExplain(true)
+        def rows = desc.gsql().jarr("select * from items where id < ?", [3])
+        def slow = desc.getSlowQueryLog().getSlowQueries()[0]
+        def wait = System.currentTimeMillis() + 5000
+        while ((null == slow.getExplain()) && (System.currentTimeMillis() < wait))
+        {
+            Thread.sleep(10)
+        }
+
+        expect:
+        rows.size() == 2
+        desc.getSlowQueryCount() == 1
+        slow.getReason() == "threshold"
+        slow.getRowCount() == 2
+        slow.getParameterTypes() == ["Integer"]
+        slow.getExplain().toUpperCase().contains("ITEMS")
+        desc.getSlowQueries().contains(slow.getFingerprint())
+        desc.getInstrumentationStatistics().contains(slow.getFingerprint())
+
+        cleanup:
+        desc.close()
+    }
+
+    def "test large object columns stream as base64 and escaped text without getObject"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def text = ("line \"quoted\" \\ tab\t\n" * 2000)
+        def data = ((0..255).collect { it as byte } * 100) as byte[]
+        gsql.execute("create table docs (id bigint primary key, body clob, data blob)")
+        gsql.executeInsert("insert into docs (id, body, data) values (?, ?, ?)", [1L, text, data])
+        gsql.setStreamLargeObjects(true)
+        def out = new StringWriter()
+        def rows = gsql.jstream(out, "select id, body, data from docs")
+        def json = new JsonSlurper().parseText(out.toString()).values().first()
+        def bytes = new ByteArrayOutputStream()
+        def size = gsql.copyLargeObject(Channels.newChannel(bytes), "select data from docs where id = ?", [1L])
+        def none = gsql.copyLargeObject(Channels.newChannel(new ByteArrayOutputStream()), "select data from docs where id = ?", [2L])
+
+        expect:
+        rows == 1
+        json[0].ID == 1
+        json[0].BODY == text
+        Base64.getDecoder().decode(json[0].DATA as String) == data
+        size == data.length
+        bytes.toByteArray() == data
+        none == -1L
+
+        cleanup:
+        gsql.execute("drop table docs")
+    }
+
+    def "test data loader batches keyed lookups into padded IN lists"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def load = new GSQLDataLoader(gsql, "select id, name from items where price > ?", [0], "id", 4)
+        def refs = [3, 1, 7, 3L, 99, 5, 2].collect { load.load(it) }
+        def frst = refs[0].get()
+        def many = load.loadMany([1, 2, 25])
+
+        expect:
+        load.getQueryCount() == 3
+        load.text(2) == "select * from (select id, name from items where price > ?) gsql_loader where id in (?, ?, ?, ?)"
+        frst.toJSONString().contains("item3")
+        refs[0].is(refs[3])
+        refs.collect { it.get()?.get("NAME") } == ["item3", "item1", "item7", "item3", null, "item5", "item2"]
+        many.collect { it.get("NAME") } == ["item1", "item2", "item25"]
+        GSQLDataLoader.sizes(100) == [1, 2, 4, 8, 16, 32, 64, 100] as int[]
+    }
+
+    def "test failed loader batches surface the error to every waiter"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def load = new GSQLDataLoader(gsql, "select id, name from items where price > ?", [0], "nope", 4)
+        def frst = load.load(1)
+        def next = load.load(2)
+
+        when:
+        frst.get()
+
+        then:
+        thrown(SQLException)
+        frst.isDone()
+        next.isDone()
+        load.getQueuedCount() == 0
+
+        when:
+        next.get()
+
+        then:
+        thrown(SQLException)
+        false == load.load(2).is(next)
+        load.getQueuedCount() == 1
+    }
+
+    def "test provider registry swaps descriptors and retires the old one"()
+    {
+        setup:
+        def prov = new GSQLProvider("main")
+        def frst = new GSQLDescriptor(source)
+        def next = new GSQLDescriptor(source)
+        prov.register("main", frst)
+        def names = prov.getSQLDescriptorNames()
+        def same = names.is(prov.getSQLDescriptorNames())
+        def trim = prov.getSQLDescriptor(" main ")
+        def prev = prov.register("main", next)
+        def swap = prov.getSQLDescriptor("main")
+        def gone = prov.removeSQLDescriptor("main")
+
+        expect:
+        same
+        names == ["main"]
+        trim.is(frst)
+        prev.is(frst)
+        swap.is(next)
+        false == frst.isActive()
+        gone
+        false == next.isActive()
+        prov.getSQLDescriptor("main") == null
+        prov.getSQLDescriptorNames().isEmpty()
+    }
+
+    def "test in flight connections drain and warm up prepares statements"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def gsql = desc.gsql()
+        def open = desc.getInFlightCount()
+        def curs = gsql.cursor("select id from items order by id")
+        curs.next()
+        def busy = desc.getInFlightCount()
+        def wait = desc.drain(50L)
+        curs.close()
+        def done = desc.getInFlightCount()
+        def idle = new GSQLDescriptor(source).drain(1000L)
+        def prop = new Properties()
+        prop.setProperty("jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("maximumPoolSize", "4")
+        def hikr = new HikariGSQLDescriptor(prop)
+        hikr.setStatementCacheSize(8)
+        hikr.setWarmUpConnections(2)
+        hikr.setWarmUpStatements(["select id from items where id = ?", "select name from items where id = ?"])
+        def warm = hikr.warmUp()
+        def stat = hikr.getStatementCache().toJSONObject()
+
+        expect:
+        open == 0
+        busy == 1
+        false == wait
+        false == desc.isActive()
+        done == 0
+        desc.getInFlightTotalCount() == 1L
+        idle
+        warm == 2
+        stat.get("connections") == 2
+        stat.get("statements") == 4
+
+        cleanup:
+        hikr.close()
+    }
+
+    def "test compiled row mappers fill typed properties and are cached per shape"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def size = GSQL.getRowMapperCache().size()
+        def text = "select id, name, price, cast(null as int) as item_count, cast(null as int) as rank from items where id <= ? order by id"
+        def list = gsql.list(GSQLTestsItem, text, [3])
+        def more = gsql.list(GSQLTestsItem, text, [5])
+        def json = gsql.list(JSONObject, "select id, name from items where id = 2")
+
+        expect:
+        list.size() == 3
+        list[0].id == 1L
+        list[2].name == "item3"
+        list[2].price == 4.5d
+        list[0].itemCount == null
+        list[0].rank == 0
+        more.size() == 5
+        json[0].get("NAME") == "item2"
+        GSQL.getRowMapperCache().size() == size + 2
+    }
+
+    def "test concurrency limit rejects extra checkouts and adapts to drops"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setConcurrencyLimitMaximum(4)
+        desc.setConcurrencyLimit(1)
+        def curs = desc.make().cursor("select id from items order by id")
+        curs.next()
+        def busy = desc.getConcurrencyInFlight()
+        def fail = null
+        try
+        {
+            desc.make().jarr("select id from items where id = 1")
+        }
+        catch (SQLTransientConnectionException e)
+        {
+            fail = e
+        }
+        curs.close()
+        def grow = desc.getConcurrencyLimit()
+        def good = desc.make().jarr("select id from items where id = 1").size()
+        def limiter = new GSQLConcurrencyLimiter(10)
+        limiter.acquire()
+        limiter.release(0L, true)
+        def drop = limiter.getLimit()
+
+        expect:
+        busy == 1
+        fail != null
+        good == 1
+        grow == 2
+        desc.getConcurrencyInFlight() == 0
+        drop == 9
+        limiter.getDroppedCount() == 1L
+        new JsonSlurper().parseText(desc.getConcurrencyLimitStatistics()).rejected == 1
+    }
+
+    def "test circuit breaker opens on connection errors and fails fast"()
+    {
+        setup:
+        def call = 0
+        def down = [getConnection: { -> call++; throw new SQLTransientConnectionException("down") }] as DataSource
+        def desc = new GSQLDescriptor(down)
+        desc.setCircuitBreakerFailureThreshold(2)
+        desc.setCircuitBreakerOpenMillis(60000L)
+        def msgs = (1..3).collect {
+            try
+            {
+                desc.make().jarr("select 1")
+                null
+            }
+            catch (SQLException e)
+            {
+                e.getMessage()
+            }
+        }
+        def open = desc.getCircuitBreakerState()
+        desc.resetCircuitBreaker()
+
+        expect:
+        call == 2
+        msgs[0] == "down"
+        msgs[2].contains("circuit breaker is open")
+        open == "OPEN"
+        desc.getCircuitBreakerState() == "CLOSED"
+        new JsonSlurper().parseText(desc.getCircuitBreakerStatistics()).rejected == 1
+    }
+
+    def "test unit of work pins one connection with transactions and nested savepoints"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def gsql = desc.gsql()
+        gsql.execute("create table work (id int primary key)")
+        def used = desc.getInFlightTotalCount()
+        def same = gsql.unitOfWork { GSQL sql ->
+            sql.jarr("select id from items where id = 1")
+            sql.rows("select id from items where id = ?", [2])
+            sql.firstRow("select count(*) from items")
+            sql.is(desc.gsql())
+        }
+        def once = desc.getInFlightTotalCount() - used
+        def fail = null
+        try
+        {
+            gsql.unitOfWork(true) {
+                gsql.executeInsert("insert into work (id) values (1)")
+                throw new IllegalStateException("undo")
+            }
+        }
+        catch (IllegalStateException e)
+        {
+            fail = e.getMessage()
+        }
+        def none = gsql.firstRow("select count(*) as c from work").c
+        gsql.unitOfWork(true) {
+            gsql.executeInsert("insert into work (id) values (1)")
+            try
+            {
+                gsql.unitOfWork(true) {
+                    gsql.executeInsert("insert into work (id) values (2)")
+                    throw new IllegalStateException("inner")
+                }
+            }
+            catch (IllegalStateException e)
+            {
+            }
+            gsql.executeInsert("insert into work (id) values (3)")
+        }
+        def kept = gsql.rows("select id from work order by id").collect { it.ID }
+
+        expect:
+        same
+        once == 1L
+        fail == "undo"
+        none == 0
+        kept == [1, 3]
+        gsql.getConnection() == null
+
+        cleanup:
+        gsql.execute("drop table work")
+    }
+
+    def "test unit of work with pinned statement caching releases its connection"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setCachePinnedStatements(true)
+        def gsql = desc.gsql()
+        def used = desc.getInFlightTotalCount()
+        def frst = gsql.unitOfWork { gsql.firstRow("select name from items where id = ?", [1]).NAME }
+        def gone = gsql.getConnection()
+        def next = gsql.unitOfWork { gsql.firstRow("select name from items where id = ?", [2]).NAME }
+
+        expect:
+        frst == "item1"
+        gone == null
+        next == "item2"
+        gsql.getConnection() == null
+        desc.getInFlightTotalCount() - used == 2L
+        desc.getInFlightCount() == 0
+    }
+
+    def "test settings changed inside a unit of work keep its pinned connection"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        def gsql = desc.gsql()
+        gsql.execute("create table tune (id int primary key)")
+        def same = null
+        def pins = null
+        try
+        {
+            gsql.unitOfWork(true) {
+                gsql.executeInsert("insert into tune (id) values (1)")
+                desc.setSlowQueryThresholdMillis(1000L)
+                desc.setConcurrencyLimit(8)
+                desc.setCircuitBreakerFailureThreshold(4)
+                same = desc.gsql().is(gsql)
+                pins = (null != desc.gsql().getConnection())
+                desc.gsql().executeInsert("insert into tune (id) values (2)")
+                throw new IllegalStateException("undo")
+            }
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        def none = gsql.firstRow("select count(*) as c from tune").c
+
+        expect:
+        same
+        pins
+        none == 0
+        gsql.getConcurrencyLimiter().is(desc.getConcurrencyLimiter())
+        gsql.getCircuitBreaker().is(desc.getCircuitBreaker())
+        gsql.getInstrumentationHandler().is(desc.getSlowQueryLog())
+
+        cleanup:
+        gsql.execute("drop table tune")
+    }
+
+    def "test support lookups follow a swapped descriptor"()
+    {
+        setup:
+        def prov = new GSQLProvider("main")
+        def frst = new GSQLDescriptor(source)
+        def next = new GSQLDescriptor(source)
+        def supp = new GSQLSupport() {
+            @Override
+            IGSQLProvider getGSQLProvider()
+            {
+                prov
+            }
+        }
+        prov.register("main", frst)
+        def once = supp.jsql("select name from items where id = 1").toJSONString()
+        prov.register("main", next)
+        def swap = supp.jsql("select name from items where id = 2").toJSONString()
+
+        expect:
+        once.contains("item1")
+        swap.contains("item2")
+        false == frst.isActive()
+        supp.getSQLDescriptor().is(next)
+        supp.getSQLDescriptor("main").is(next)
+    }
+
+    def "test support streams JSON to a Writer or an OutputStream"()
+    {
+        setup:
+        def prov = new GSQLProvider("main")
+        prov.register("main", new GSQLDescriptor(source))
+        def supp = new GSQLSupport() {
+            @Override
+            IGSQLProvider getGSQLProvider()
+            {
+                prov
+            }
+        }
+        def text = new StringWriter()
+        def byts = new ByteArrayOutputStream()
+        def wrow = supp.jstream(text, "select id, name from items where id <= ?", [3])
+        def brow = supp.jstream(byts, "main", "select id, name from items where id <= ?", [3])
+
+        expect:
+        wrow == 3L
+        brow == 3L
+        new String(byts.toByteArray(), "UTF-8") == text.toString()
+
+        cleanup:
+        prov.close()
+    }
+
+    def "test support unit of work keeps its descriptor across a swap"()
+    {
+        setup:
+        def prov = new GSQLProvider("main")
+        prov.setDrainMillis(5000L)
+        def frst = new GSQLDescriptor(source)
+        def next = new GSQLDescriptor(source)
+        def supp = new GSQLSupport() {
+            @Override
+            IGSQLProvider getGSQLProvider()
+            {
+                prov
+            }
+        }
+        prov.register("main", frst)
+        supp.gsql().execute("create table swap (id int primary key)")
+        def same = null
+        def kept = null
+        def seen = null
+        try
+        {
+            supp.unitOfWork(true) {
+                supp.gsql().executeInsert("insert into swap (id) values (1)")
+                prov.register("main", next)
+                same = supp.gsql().is(frst.gsql())
+                kept = supp.getSQLDescriptor().is(frst)
+                seen = supp.gsql("main").firstRow("select count(*) as c from swap").c
+                throw new IllegalStateException("undo")
+            }
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        def none = supp.gsql().firstRow("select count(*) as c from swap").c
+        def gone = null
+        try
+        {
+            frst.gsql()
+        }
+        catch (IllegalArgumentException e)
+        {
+            gone = e
+        }
+
+        expect:
+        same
+        kept
+        seen == 1
+        none == 0
+        supp.gsql().is(next.gsql())
+        gone != null
+
+        cleanup:
+        supp.gsql().execute("drop table swap")
+    }
+
+    def "test batch leaves an outer transaction to its owner"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        gsql.execute("create table owned (id int primary key)")
+        def made = null
+        try
+        {
+            gsql.unitOfWork(true) {
+                made = gsql.batch("insert into owned (id) values (?)", (1..10).collect { [it] }, 2, 1, false)
+                throw new IllegalStateException("undo")
+            }
+        }
+        catch (IllegalStateException e)
+        {
+        }
+        def rows = gsql.firstRow("select count(*) as total from owned")
+
+        expect:
+        made.getBatchCount() == 5
+        made.getCommitCount() == 0
+        rows.total == 0
+
+        cleanup:
+        gsql.execute("drop table owned")
+    }
+
+    def "test result cache is invalidated by withBatch and call"()
+    {
+        setup:
+        def desc = new GSQLDescriptor(source)
+        desc.setResultCacheSize(16)
+        def gsql = desc.gsql()
+        def text = "select name from bcached where id = ?"
+        gsql.execute("create table bcached (id bigint primary key, name varchar(64))")
+        gsql.executeInsert("insert into bcached (id, name) values (?, ?)", [1, "one"])
+        gsql.jsql(text, [1])
+        gsql.withBatch(10, "update bcached set name = ? where id = ?") { it.addBatch(["two", 1]) }
+        def frst = gsql.jsql(text, [1]).toJSONString()
+        gsql.withBatch { it.addBatch("update bcached set name = 'three' where id = 1") }
+        def next = gsql.jsql(text, [1]).toJSONString()
+        gsql.call("call 1")
+        def size = desc.getResultCache().size()
+
+        expect:
+        frst.contains("two")
+        next.contains("three")
+        size == 0
+
+        cleanup:
+        gsql.execute("drop table bcached")
+    }
+
+    def "test write timeouts trip the circuit breaker and back off the limit"()
+    {
+        setup:
+        def stmt = [execute: { Object[] args -> throw new SQLTimeoutException("slow") }, close: { -> }] as Statement
+        def conn = [createStatement: { Object[] args -> stmt }, getAutoCommit: { -> true }, isClosed: { -> true }, close: { -> }] as Connection
+        def gsql = new GSQL([getConnection: { Object[] args -> conn }] as DataSource)
+        def breaker = new GSQLCircuitBreaker()
+        breaker.setFailureThreshold(2)
+        def limiter = new GSQLConcurrencyLimiter(10)
+        gsql.setCircuitBreaker(breaker)
+        gsql.setConcurrencyLimiter(limiter)
+        def msgs = (1..3).collect {
+            try
+            {
+                gsql.execute("update items set name = name")
+                null
+            }
+            catch (SQLException e)
+            {
+                e.getMessage()
+            }
+        }
+
+        expect:
+        msgs[0] == "slow"
+        msgs[1] == "slow"
+        msgs[2].contains("circuit breaker is open")
+        breaker.getState() == GSQLCircuitBreaker.State.OPEN
+        limiter.getDroppedCount() == 2L
+        limiter.getInFlight() == 0
+    }
+
+    def "test failing connection handlers give back the connection and its permits"()
+    {
+        setup:
+        def seen = null
+        def gsql = new GSQL(source)
+        def flight = new GSQLInFlightCounter()
+        def limiter = new GSQLConcurrencyLimiter(1)
+        gsql.setInFlightCounter(flight)
+        gsql.setConcurrencyLimiter(limiter)
+        gsql.setPreProcessConnectionHandlers([{ Connection c -> seen = c; throw new SQLException("setup") } as IGSQLPreProcessConnectionHandler])
+        def msgs = (1..2).collect {
+            try
+            {
+                gsql.jarr("select id from items where id = 1")
+                null
+            }
+            catch (SQLException e)
+            {
+                e.getMessage()
+            }
+        }
+
+        expect:
+        msgs == ["setup", "setup"]
+        seen.isClosed()
+        flight.getCount() == 0
+        flight.awaitIdle(10L)
+        limiter.getInFlight() == 0
+        limiter.getRejectedCount() == 0L
+    }
+
+    def "test long held connections do not back off the limit and stale outcomes leave the breaker alone"()
+    {
+        setup:
+        def gsql = new GSQL(source)
+        def limiter = new GSQLConcurrencyLimiter(10)
+        limiter.setTimeoutMillis(50L)
+        gsql.setConcurrencyLimiter(limiter)
+        gsql.unitOfWork(true) {
+            gsql.jarr("select id from items where id = 1")
+            gsql.executeUpdate("update items set name = name where id = 1")
+            Thread.sleep(120L)
+        }
+        def curs = gsql.cursor("select id from items order by id")
+        curs.next()
+        Thread.sleep(120L)
+        curs.close()
+        def breaker = new GSQLCircuitBreaker()
+        breaker.setFailureThreshold(1)
+        breaker.setOpenMillis(0L)
+        def slow = breaker.admit()
+        breaker.failure(breaker.admit())
+        breaker.success(slow)
+        def open = breaker.getState()
+        def test = breaker.admit()
+        breaker.success(slow)
+        def half = breaker.getState()
+        breaker.success(test)
+
+        expect:
+        limiter.getDroppedCount() == 0L
+        limiter.getLimit() == 10
+        limiter.getInFlight() == 0
+        open == GSQLCircuitBreaker.State.OPEN
+        half == GSQLCircuitBreaker.State.HALF_OPEN
+        breaker.getState() == GSQLCircuitBreaker.State.CLOSED
+    }
+
+    def "test drained descriptors close their primary and replica pools"()
+    {
+        setup:
+        def pool = { String name ->
+            def config = new HikariConfig()
+            config.setJdbcUrl("jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+            config.setMaximumPoolSize(1)
+            config.setPoolName(name)
+            new HikariDataSource(config)
+        }
+        def base = pool("drain-base")
+        def prim = pool("drain-primary")
+        def repl = pool("drain-replica")
+        def kept = pool("drain-kept")
+        def desc = new GSQLDescriptor(base)
+        desc.setCloseDataSource(true)
+        def idle = desc.drain(1000L)
+        new GSQLRoutingDescriptor(prim, [repl as DataSource]).drain(1000L)
+        new GSQLDescriptor(kept).close()
+        def prop = new Properties()
+        prop.setProperty("jdbcUrl", "jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        prop.setProperty("maximumPoolSize", "1")
+        def owns = new HikariGSQLDescriptor(prop)
+        owns.close()
+        def hold = new HikariGSQLDescriptor(prop)
+        hold.setCloseDataSource(false)
+        hold.close()
+
+        expect:
+        idle
+        base.isClosed()
+        false == prim.isClosed()
+        repl.isClosed()
+        false == kept.isClosed()
+        owns.getHikariDataSource().isClosed()
+        false == hold.getHikariDataSource().isClosed()
+
+        cleanup:
+        prim.close()
+        kept.close()
+        hold.getHikariDataSource().close()
+    }
+
+    def "test swapping descriptors that share a pool leaves the pool open"()
+    {
+        setup:
+        def config = new HikariConfig()
+        config.setJdbcUrl("jdbc:h2:mem:gsqltests;DB_CLOSE_DELAY=-1")
+        config.setMaximumPoolSize(2)
+        config.setPoolName("shared")
+        def pool = new HikariDataSource(config)
+        def prov = new GSQLProvider("shared")
+        prov.setDrainMillis(1000L)
+        def frst = new GSQLDescriptor(pool)
+        def next = new GSQLDescriptor(pool)
+        prov.register("shared", frst)
+        prov.register("shared", next)
+        Thread.getAllStackTraces().keySet().findAll { it.getName() == "GSQLDrain-shared" }*.join()
+        def rows = prov.getSQLDescriptor("shared").gsql().jarr("select id from items where id = 1")
+        prov.close()
+
+        expect:
+        false == frst.isActive()
+        rows.size() == 1
+        false == pool.isClosed()
+
+        cleanup:
+        pool.close()
+    }
+}
+
+class GSQLTestsItem
+{
+    long id
+
+    String name
+
+    double price
+
+    Integer itemCount
+
+    int rank
+}